@@ -0,0 +1,391 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A {@link DependencyMap} which can be built by many threads at once. Values
+ * and dependencies are stored in {@link ConcurrentHashMap}s so writers only
+ * contend when they modify the same key, and reads never block.<br/>
+ * <br/>
+ * {@link #snapshot()} returns a consistent copy of the map which can be
+ * analyzed while writers continue. Writers are never held back by a snapshot:
+ * a snapshot starts a new epoch and only waits for the modifications already
+ * in progress to finish, while it copies the map the modifications of the new
+ * epoch first save what they change (the previous value of a key, or the fact
+ * that a dependency is new) so the copy can ignore them. Writers announce
+ * themselves on counters striped by thread instead of a shared lock.
+ * {@link #toNodeMap()}, {@link #toNodes()} and {@link #toAnalyzer()} operate
+ * on a snapshot, while {@link #getValueMap()} and {@link #getDependencyMap()}
+ * are live views, so a {@link DependencyDiff} of this map must be taken
+ * between snapshots. Null values are not supported.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <K>
+ *        The key of the map.
+ * @param <V>
+ *        The value in the node.
+ */
+public class ConcurrentDependencyMap<K, V> extends DependencyMap<K, V>
+{
+
+	private static final int STRIPES = 16;
+	private static final int SPACING = 16;
+	private static final Object ABSENT = new Object();
+
+	private final ConcurrentMap<K, Set<K>> dependencies;
+	private final ConcurrentMap<K, V> values;
+
+	// The number of writers in progress per epoch parity and stripe, spaced
+	// apart so stripes don't share a cache line.
+	private final AtomicLong epoch = new AtomicLong();
+	private final AtomicIntegerArray writers = new AtomicIntegerArray( 2 * STRIPES * SPACING );
+	private final Object snapshotLock = new Object();
+	private volatile Capture<K> capture;
+
+	/**
+	 * Instantiates a new ConcurrentDependencyMap without values or dependents.
+	 */
+	public ConcurrentDependencyMap()
+	{
+		this( new ConcurrentHashMap<K, Set<K>>(), new ConcurrentHashMap<K, V>() );
+	}
+
+	private ConcurrentDependencyMap( ConcurrentMap<K, Set<K>> dependencies, ConcurrentMap<K, V> values )
+	{
+		super( dependencies, values );
+
+		this.dependencies = dependencies;
+		this.values = values;
+	}
+
+	@Override
+	public void addDependency( K a, K b )
+	{
+		final long stamp = enter();
+		try
+		{
+			addEdge( a, b, getCapture( stamp ) );
+		}
+		finally
+		{
+			exit( stamp );
+		}
+	}
+
+	@Override
+	public void addDependencies( K a, K ... b )
+	{
+		final long stamp = enter();
+		try
+		{
+			Capture<K> c = getCapture( stamp );
+
+			for (K dn : b)
+			{
+				addEdge( a, dn, c );
+			}
+		}
+		finally
+		{
+			exit( stamp );
+		}
+	}
+
+	@Override
+	public void addDependent( K a, K b )
+	{
+		final long stamp = enter();
+		try
+		{
+			addEdge( b, a, getCapture( stamp ) );
+		}
+		finally
+		{
+			exit( stamp );
+		}
+	}
+
+	@Override
+	public void addDependents( K a, K ... b )
+	{
+		final long stamp = enter();
+		try
+		{
+			Capture<K> c = getCapture( stamp );
+
+			for (K dn : b)
+			{
+				addEdge( dn, a, c );
+			}
+		}
+		finally
+		{
+			exit( stamp );
+		}
+	}
+
+	/**
+	 * Adds a dependency, first saving it in the capture of a snapshot in
+	 * progress if it's new.
+	 */
+	private void addEdge( K a, K b, Capture<K> c )
+	{
+		Set<K> set = getDependencies( a );
+
+		if (c != null && !set.contains( b ))
+		{
+			c.edges.add( new DependencyEdge<K>( a, b ) );
+		}
+
+		set.add( b );
+	}
+
+	/**
+	 * Returns a {@link Set} of all things dependent on the given parent. The
+	 * set is thread-safe, however modifications made directly to it are not
+	 * guaranteed to be seen atomically by {@link #snapshot()}.
+	 * 
+	 * @param parent
+	 *        The parent to get the dependents of.
+	 * @return The non-null set of dependencies.
+	 */
+	@Override
+	public Set<K> getDependencies( K parent )
+	{
+		Set<K> set = dependencies.get( parent );
+
+		if (set == null)
+		{
+			Set<K> created = newDependencySet();
+
+			set = dependencies.putIfAbsent( parent, created );
+
+			if (set == null)
+			{
+				set = created;
+			}
+		}
+
+		return set;
+	}
+
+	@Override
+	protected Set<K> newDependencySet()
+	{
+		return Collections.newSetFromMap( new ConcurrentHashMap<K, Boolean>() );
+	}
+
+	@Override
+	public void put( K key, V value )
+	{
+		final long stamp = enter();
+		try
+		{
+			Capture<K> c = getCapture( stamp );
+
+			if (c != null)
+			{
+				V previous = values.get( key );
+
+				c.values.putIfAbsent( key, previous == null ? ABSENT : previous );
+			}
+
+			super.put( key, value );
+		}
+		finally
+		{
+			exit( stamp );
+		}
+	}
+
+	/**
+	 * Returns a consistent copy of the values and dependencies in this map.
+	 * Modifications made to this map afterwards are not seen by the copy, and
+	 * writers continue while the copy is made. Snapshots are taken one at a
+	 * time.
+	 * 
+	 * @return A new {@link DependencyMap}.
+	 */
+	public DependencyMap<K, V> snapshot()
+	{
+		DependencyMap<K, V> copy = new DependencyMap<K, V>();
+
+		synchronized (snapshotLock)
+		{
+			final long stamp = epoch.get();
+			final Capture<K> c = new Capture<K>( stamp );
+
+			// Modifications which start from now on are stamped with the next
+			// epoch and see the capture, only the ones in progress are waited
+			// on.
+			capture = c;
+			epoch.set( stamp + 1 );
+
+			while (isWriting( stamp ))
+			{
+				Thread.yield();
+			}
+
+			try
+			{
+				// The live state is read before the capture, a modification
+				// saves to the capture before it changes the live state.
+				for (Entry<K, V> e : values.entrySet())
+				{
+					V value = e.getValue();
+					Object previous = c.values.get( e.getKey() );
+
+					if (previous != ABSENT)
+					{
+						copy.put( e.getKey(), previous != null ? (V)previous : value );
+					}
+				}
+
+				for (Entry<K, Set<K>> e : dependencies.entrySet())
+				{
+					Set<K> set = copy.getDependencies( e.getKey() );
+
+					for (K d : e.getValue())
+					{
+						if (!c.edges.contains( new DependencyEdge<K>( e.getKey(), d ) ))
+						{
+							set.add( d );
+						}
+					}
+				}
+			}
+			finally
+			{
+				capture = null;
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Announces a modification on the stripe of the current thread.
+	 * 
+	 * @return The epoch the modification belongs to.
+	 */
+	private long enter()
+	{
+		for (;;)
+		{
+			long stamp = epoch.get();
+			int slot = getSlot( stamp );
+
+			writers.incrementAndGet( slot );
+
+			// A snapshot which started in between waits on the previous epoch,
+			// so the modification moves to the new one.
+			if (epoch.get() == stamp)
+			{
+				return stamp;
+			}
+
+			writers.decrementAndGet( slot );
+		}
+	}
+
+	/**
+	 * Ends a modification started with {@link #enter()}.
+	 */
+	private void exit( long stamp )
+	{
+		writers.decrementAndGet( getSlot( stamp ) );
+	}
+
+	private int getSlot( long stamp )
+	{
+		int stripe = (int)( Thread.currentThread().getId() & ( STRIPES - 1 ) );
+
+		return ( (int)( stamp & 1 ) * STRIPES + stripe ) * SPACING;
+	}
+
+	/**
+	 * @return True if a modification of the given epoch is in progress.
+	 */
+	private boolean isWriting( long stamp )
+	{
+		final int first = (int)( stamp & 1 ) * STRIPES;
+
+		for (int i = 0; i < STRIPES; i++)
+		{
+			if (writers.get( ( first + i ) * SPACING ) != 0)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The capture of the snapshot in progress if a modification of the
+	 *         given epoch needs to save what it changes, otherwise null.
+	 */
+	private Capture<K> getCapture( long stamp )
+	{
+		Capture<K> c = capture;
+
+		return ( c != null && stamp > c.epoch ? c : null );
+	}
+
+	/**
+	 * Converts a snapshot of the values and dependencies in the map into a
+	 * {@link Map} of keys to {@link DependencyNode}s. {@link #toNodes()} and
+	 * {@link #toAnalyzer()} are built from this map.
+	 * 
+	 * @return The reference to the map of {@link DependencyNode}s.
+	 */
+	@Override
+	public Map<K, DependencyNode<V>> toNodeMap()
+	{
+		return snapshot().toNodeMap();
+	}
+
+	/**
+	 * What the modifications made while a snapshot copies the map changed: the
+	 * previous value of each key (or {@link #ABSENT}) and the new
+	 * dependencies.
+	 */
+	private static class Capture<K>
+	{
+
+		private final long epoch;
+		private final ConcurrentMap<K, Object> values = new ConcurrentHashMap<K, Object>();
+		private final Set<DependencyEdge<K>> edges = Collections.newSetFromMap( new ConcurrentHashMap<DependencyEdge<K>, Boolean>() );
+
+		public Capture( long epoch )
+		{
+			this.epoch = epoch;
+		}
+	}
+
+}
@@ -16,10 +16,13 @@
 
 package org.magnos.dependency;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -32,11 +35,23 @@ import java.util.List;
  * If a cycle is detected in the graph {@link #isValid()} returns false and
  * {@link #isCyclic()} returns true. {@link #getCycleSize()} returns the number
  * of nodes involved in the cycle and that number of nodes in
- * {@link #getCycle()} the nodes in the cycle.<br/>
+ * {@link #getCycle()} the nodes in the cycle. A graph with cycles can still be
+ * ordered with {@link #analyzeLenient(Collection, Object...)} which ignores a
+ * small set of dependencies to break the cycles.<br/>
  * <br/>
  * If a cycle isn't detected, {@link #getOrdered()} and
  * {@link #getOrderedNodes()} will be an array of values and nodes ordered so
- * that the i'th element depends on all elements less than i.
+ * that the i'th element depends on all elements less than i. The ordered
+ * arrays are grouped by depth, level n occupies the indices
+ * <code>[getLevelOffsets()[n], getLevelOffsets()[n + 1])</code>, and the
+ * level lists are read-only views over those arrays.<br/>
+ * <br/>
+ * A {@link #isReusable() reusable} analyzer keeps its arrays between analyses,
+ * so re-analyzing a graph that hasn't grown doesn't allocate. Instead of
+ * resetting the depth of every node before an analysis, the nodes not yet
+ * placed are stamped with the generation of the analysis. A dependency which
+ * isn't part of the analyzed collection is considered placed at the depth it
+ * already has.
  * 
  * @author Philip Diffenderfer
  * 
@@ -46,15 +61,48 @@ import java.util.List;
 public class DependencyAnalyzer<T>
 {
 
+	private static final AtomicLong GENERATION = new AtomicLong();
+
+	private final boolean reusable;
 	private DependencyNode<T>[] nodes;
+	private int nodeCount = 0;
 	private DependencyNode<T>[] cycle;
 	private int cycleSize = 0;
 	private DependencyNode<T>[] orderedNodes;
 	private int orderedSize = 0;
 	private T[] ordered;
+	private DependencyNode<T>[] sortNodes;
+	private T[] sortValues;
 	private int maximumDepth = -1;
+	private int[] levelOffsets = { 0 };
+	private List<T>[] levels;
+	private List<DependencyNode<T>>[] levelNodes;
+	private DependencyNode<T>[] brokenDependents;
+	private DependencyNode<T>[] brokenDependencies;
+	private int brokenSize = 0;
 	private boolean valid = false;
 
+	/**
+	 * Instantiates a new DependencyAnalyzer which allocates new arrays on each
+	 * analysis.
+	 */
+	public DependencyAnalyzer()
+	{
+		this( false );
+	}
+
+	/**
+	 * Instantiates a new DependencyAnalyzer.
+	 * 
+	 * @param reusable
+	 *        True if the arrays should be kept and reused by the next analysis.
+	 * @see #isReusable()
+	 */
+	public DependencyAnalyzer( boolean reusable )
+	{
+		this.reusable = reusable;
+	}
+
 	/**
 	 * Analyzes the graph of nodes and attempts to construct a tree.
 	 * 
@@ -66,28 +114,47 @@ public class DependencyAnalyzer<T>
 	public boolean analyze( Collection<DependencyNode<T>> nodeCollection, T ... emptyArray )
 	{
 		final int N = nodeCollection.size();
+		final long generation = GENERATION.incrementAndGet();
 
-		nodes = nodeCollection.toArray( new DependencyNode[N] );
+		if (reusable && nodes != null && nodes.length >= N)
+		{
+			nodes = nodeCollection.toArray( nodes );
+		}
+		else
+		{
+			nodes = nodeCollection.toArray( new DependencyNode[N] );
+		}
 
-		cycle = new DependencyNode[N];
-		cycleSize = 0;
+		nodeCount = N;
+		brokenSize = 0;
 
-		ordered = Arrays.copyOf( emptyArray, N );
-		orderedNodes = new DependencyNode[N];
+		if (!reusable || cycle == null || cycle.length < N)
+		{
+			cycle = new DependencyNode[N];
+			orderedNodes = new DependencyNode[N];
+		}
+
+		if (!reusable || ordered == null || ordered.length < N || ordered.getClass() != emptyArray.getClass())
+		{
+			ordered = Arrays.copyOf( emptyArray, N );
+		}
+
+		cycleSize = 0;
 		orderedSize = 0;
 
 		maximumDepth = 0;
 
 		valid = true;
 
-		// Initialize the nodes which have no dependencies. 
+		// Initialize the nodes which have no dependencies, the remaining nodes
+		// are stamped with this generation until they're placed. 
 		for (int i = 0; i < N; i++)
 		{
 			DependencyNode<T> dn = nodes[i];
 
 			if (dn.hasDependencies())
 			{
-				dn.setDepth( -1 );
+				dn.setGeneration( generation );
 				cycle[cycleSize++] = dn;
 			}
 			else
@@ -100,7 +167,7 @@ public class DependencyAnalyzer<T>
 		// all nodes.
 		if (orderedSize == 0)
 		{
-			return ( valid = false );
+			return finish( false );
 		}
 
 		// While not all nodes have been placed in the ordered array.
@@ -110,23 +177,28 @@ public class DependencyAnalyzer<T>
 
 			// Determine for each node whether all of it's dependencies have
 			// been placed on the tree, if so place it on the tree, otherwise
-			// keep it on the cycle array.
+			// keep it on the cycle array. A dependency which isn't being
+			// analyzed keeps the depth it already has.
 			for (int i = 0; i < cycleSize; i++)
 			{
 				DependencyNode<T> dn = cycle[i];
 
-				int min = N;
 				int max = -1;
 
 				for (DependencyNode<T> dependency : dn.getDependencies())
 				{
-					min = Math.min( min, dependency.getDepth() );
+					if (dependency.getGeneration() == generation)
+					{
+						max = Integer.MIN_VALUE;
+						break;
+					}
+
 					max = Math.max( max, dependency.getDepth() );
 				}
 
 				// If all dependencies have been placed on the tree, add this
 				// node to the tree and mark it's depth and index.
-				if (min != -1)
+				if (max != Integer.MIN_VALUE)
 				{
 					addOrdered( max + 1, dn );
 
@@ -144,13 +216,392 @@ public class DependencyAnalyzer<T>
 			// there is a circular dependency that exists in cycle.
 			if (newlyCycled == cycleSize)
 			{
-				return ( valid = false );
+				return finish( false );
 			}
 
 			cycleSize = newlyCycled;
 		}
 
-		return ( valid = true );
+		return finish( true );
+	}
+
+	/**
+	 * Analyzes the graph of nodes and constructs a tree even when the graph has
+	 * cycles. If a cycle exists a feedback arc set is computed with the
+	 * heuristic in {@link DependencyFeedbackArcSet} and those dependencies are
+	 * ignored while the nodes are ordered. The ignored dependencies are given by
+	 * {@link #getBrokenDependents()} and {@link #getBrokenDependencies()}, the
+	 * nodes themselves are left unchanged.
+	 * 
+	 * @param nodeCollection
+	 *        The collection of {@link DependencyNode}s.
+	 * @return True if the graph was sorted without ignoring any dependencies,
+	 *         false if dependencies were ignored to break cycles.
+	 * @see DependencyAnalyzer
+	 */
+	public boolean analyzeLenient( Collection<DependencyNode<T>> nodeCollection, T ... emptyArray )
+	{
+		if (analyze( nodeCollection, emptyArray ))
+		{
+			return true;
+		}
+
+		DependencyFeedbackArcSet<T> feedback = new DependencyFeedbackArcSet<T>();
+		final int broken = feedback.compute( this );
+		final DependencyNode<T>[] dependents = feedback.getDependents();
+		final DependencyNode<T>[] dependencies = feedback.getDependencies();
+
+		for (int i = 0; i < broken; i++)
+		{
+			dependents[i].removeDependency( dependencies[i] );
+		}
+
+		try
+		{
+			analyze( nodeCollection, emptyArray );
+		}
+		finally
+		{
+			for (int i = 0; i < broken; i++)
+			{
+				dependents[i].addDependency( dependencies[i] );
+			}
+		}
+
+		brokenDependents = dependents;
+		brokenDependencies = dependencies;
+		brokenSize = broken;
+
+		return false;
+	}
+
+	/**
+	 * Updates a valid analysis after nodes were added, removed, or had their
+	 * dependencies changed without ordering the whole graph again. Only the
+	 * changed nodes and the nodes which depend on them (directly or not) are
+	 * placed again, since a dependent is always deeper than its dependencies
+	 * they're found by scanning the ordered nodes from the lowest changed
+	 * level. The ordered arrays and level offsets before the lowest level a
+	 * node is removed from or placed in are left untouched, the nodes which
+	 * aren't placed again keep their relative order, and the placed nodes are
+	 * added at the end of their level. The arrays are updated in place unless
+	 * they're too small for the graph.
+	 * 
+	 * @param changed
+	 *        The nodes added to the graph and the nodes whose dependencies
+	 *        changed.
+	 * @param removed
+	 *        The nodes removed from the graph, the remaining nodes shouldn't
+	 *        depend on them.
+	 * @return True if the analysis was updated, false if the analysis wasn't
+	 *         valid or the change introduced a cycle, in which case the analysis
+	 *         is unchanged and the nodes need to be analyzed again.
+	 */
+	public boolean update( Collection<DependencyNode<T>> changed, Collection<DependencyNode<T>> removed )
+	{
+		if (!valid)
+		{
+			return false;
+		}
+
+		final long changedGeneration = GENERATION.incrementAndGet();
+		final long removedGeneration = GENERATION.incrementAndGet();
+		final long placedGeneration = GENERATION.incrementAndGet();
+		final List<DependencyNode<T>> affected = new ArrayList<DependencyNode<T>>( changed );
+		int lowest = maximumDepth + 1;
+
+		for (DependencyNode<T> dn : removed)
+		{
+			if (indexOf( dn ) != -1)
+			{
+				dn.setGeneration( removedGeneration );
+				lowest = Math.min( lowest, dn.getDepth() );
+			}
+		}
+
+		for (DependencyNode<T> dn : changed)
+		{
+			if (indexOf( dn ) != -1)
+			{
+				lowest = Math.min( lowest, dn.getDepth() );
+			}
+
+			dn.setGeneration( changedGeneration );
+		}
+
+		// The nodes which depend on a changed or removed node are all after
+		// the lowest changed level, and a single pass finds them all since
+		// each node is after its dependencies.
+		for (int i = levelOffsets[lowest]; i < orderedSize; i++)
+		{
+			DependencyNode<T> dn = orderedNodes[i];
+			long generation = dn.getGeneration();
+
+			if (generation != changedGeneration && generation != removedGeneration)
+			{
+				for (DependencyNode<T> dependency : dn.getDependencies())
+				{
+					generation = dependency.getGeneration();
+
+					if (generation == changedGeneration || generation == removedGeneration)
+					{
+						dn.setGeneration( changedGeneration );
+						affected.add( dn );
+						break;
+					}
+				}
+			}
+		}
+
+		final int A = affected.size();
+		final int[] previousDepth = new int[A];
+		final DependencyNode<T>[] pending = affected.toArray( new DependencyNode[A] );
+		int pendingSize = A;
+		int deepest = -1;
+
+		for (int i = 0; i < A; i++)
+		{
+			previousDepth[i] = pending[i].getDepth();
+		}
+
+		// Place the affected nodes the same way a full analysis does, a
+		// dependency which isn't affected keeps the depth it has.
+		while (pendingSize > 0)
+		{
+			int remaining = 0;
+
+			for (int i = 0; i < pendingSize; i++)
+			{
+				DependencyNode<T> dn = pending[i];
+
+				int max = -1;
+
+				for (DependencyNode<T> dependency : dn.getDependencies())
+				{
+					long generation = dependency.getGeneration();
+
+					if (generation == changedGeneration)
+					{
+						max = Integer.MIN_VALUE;
+						break;
+					}
+
+					if (generation != removedGeneration)
+					{
+						max = Math.max( max, dependency.getDepth() );
+					}
+				}
+
+				if (max != Integer.MIN_VALUE)
+				{
+					dn.setGeneration( placedGeneration );
+					dn.setDepth( max + 1 );
+					lowest = Math.min( lowest, max + 1 );
+					deepest = Math.max( deepest, max + 1 );
+				}
+				else
+				{
+					pending[remaining++] = dn;
+				}
+			}
+
+			// The change introduced a cycle, restore the affected nodes.
+			if (remaining == pendingSize)
+			{
+				for (int i = 0; i < A; i++)
+				{
+					affected.get( i ).setDepth( previousDepth[i] );
+					affected.get( i ).setGeneration( 0 );
+				}
+
+				return false;
+			}
+
+			pendingSize = remaining;
+		}
+
+		// Gather the nodes from the lowest changed level on which keep their
+		// place followed by the affected nodes, and group them by depth.
+		final int from = levelOffsets[lowest];
+		final DependencyNode<T>[] tail = new DependencyNode[orderedSize - from + A];
+		int tailSize = 0;
+		int maximum = Math.max( lowest - 1, deepest );
+
+		for (int i = from; i < orderedSize; i++)
+		{
+			DependencyNode<T> dn = orderedNodes[i];
+			long generation = dn.getGeneration();
+
+			if (generation == removedGeneration)
+			{
+				dn.setGeneration( 0 );
+			}
+			else if (generation != placedGeneration)
+			{
+				tail[tailSize++] = dn;
+				maximum = Math.max( maximum, dn.getDepth() );
+			}
+		}
+
+		for (int i = 0; i < A; i++)
+		{
+			tail[tailSize++] = affected.get( i );
+		}
+
+		final int size = from + tailSize;
+		final int levelCount = maximum + 1;
+		final int[] offsets = ( levelOffsets.length > levelCount ? levelOffsets : Arrays.copyOf( levelOffsets, levelCount + 1 ) );
+
+		if (orderedNodes.length < size)
+		{
+			orderedNodes = Arrays.copyOf( orderedNodes, size );
+		}
+
+		if (ordered.length < size)
+		{
+			ordered = Arrays.copyOf( ordered, size );
+		}
+
+		Arrays.fill( offsets, lowest + 1, levelCount + 1, 0 );
+
+		for (int i = 0; i < tailSize; i++)
+		{
+			offsets[tail[i].getDepth() + 1]++;
+		}
+
+		for (int i = lowest + 1; i <= levelCount; i++)
+		{
+			offsets[i] += offsets[i - 1];
+		}
+
+		for (int i = 0; i < tailSize; i++)
+		{
+			DependencyNode<T> dn = tail[i];
+			int k = offsets[dn.getDepth()]++;
+
+			dn.setGeneration( 0 );
+			dn.setIndex( k );
+			orderedNodes[k] = dn;
+			ordered[k] = dn.getValue();
+		}
+
+		for (int i = levelCount; i > lowest; i--)
+		{
+			offsets[i] = offsets[i - 1];
+		}
+
+		offsets[lowest] = from;
+
+		Arrays.fill( orderedNodes, size, Math.max( size, orderedSize ), null );
+		Arrays.fill( ordered, size, Math.max( size, orderedSize ), null );
+
+		if (nodes == null || nodes.length < size)
+		{
+			nodes = new DependencyNode[size];
+		}
+
+		System.arraycopy( orderedNodes, 0, nodes, 0, size );
+
+		nodeCount = size;
+		orderedSize = size;
+		cycleSize = 0;
+		brokenSize = 0;
+		maximumDepth = maximum;
+		levelOffsets = offsets;
+
+		return true;
+	}
+
+	/**
+	 * Groups the ordered arrays by depth (keeping the relative order of nodes
+	 * within a level) and computes the offset of each level.
+	 * 
+	 * @param valid
+	 *        Whether the analysis was free of cycles.
+	 * @return The value of valid.
+	 */
+	private boolean finish( boolean valid )
+	{
+		final int levelCount = maximumDepth + 1;
+		final int[] offsets = ( reusable && levelOffsets.length > levelCount ? levelOffsets : new int[levelCount + 1] );
+		boolean grouped = true;
+
+		Arrays.fill( offsets, 0, levelCount + 1, 0 );
+
+		for (int i = 0; i < orderedSize; i++)
+		{
+			int depth = orderedNodes[i].getDepth();
+
+			grouped &= ( i == 0 || depth >= orderedNodes[i - 1].getDepth() );
+			offsets[depth + 1]++;
+		}
+
+		for (int i = 1; i <= levelCount; i++)
+		{
+			offsets[i] += offsets[i - 1];
+		}
+
+		// Passes over the cycle array can place a node deeper than a node
+		// placed after it, so a stable counting sort restores depth order.
+		if (!grouped)
+		{
+			DependencyNode<T>[] sortedNodes = sortNodes;
+			T[] sorted = sortValues;
+
+			if (!reusable || sortedNodes == null || sortedNodes.length != orderedNodes.length)
+			{
+				sortedNodes = new DependencyNode[orderedNodes.length];
+			}
+
+			if (!reusable || sorted == null || sorted.length != ordered.length || sorted.getClass() != ordered.getClass())
+			{
+				sorted = Arrays.copyOf( ordered, ordered.length );
+			}
+
+			for (int i = 0; i < orderedSize; i++)
+			{
+				DependencyNode<T> dn = orderedNodes[i];
+				int k = offsets[dn.getDepth()]++;
+
+				dn.setIndex( k );
+				sortedNodes[k] = dn;
+				sorted[k] = ordered[i];
+			}
+
+			for (int i = levelCount; i > 0; i--)
+			{
+				offsets[i] = offsets[i - 1];
+			}
+
+			offsets[0] = 0;
+
+			// A reusable analyzer copies back so the arrays it returns keep
+			// their identity, and keeps the sorted arrays for the next sort.
+			if (reusable)
+			{
+				System.arraycopy( sortedNodes, 0, orderedNodes, 0, orderedSize );
+				System.arraycopy( sorted, 0, ordered, 0, orderedSize );
+				sortNodes = sortedNodes;
+				sortValues = sorted;
+			}
+			else
+			{
+				orderedNodes = sortedNodes;
+				ordered = sorted;
+			}
+		}
+
+		// Nodes left in the cycle are indexed after the ordered nodes, so every
+		// analyzed node has a unique index.
+		for (int i = 0; i < cycleSize; i++)
+		{
+			cycle[i].setDepth( -1 );
+			cycle[i].setIndex( orderedSize + i );
+		}
+
+		levelOffsets = offsets;
+
+		return ( this.valid = valid );
 	}
 
 	/**
@@ -163,6 +614,7 @@ public class DependencyAnalyzer<T>
 	 */
 	private void addOrdered( int depth, DependencyNode<T> dn )
 	{
+		dn.setGeneration( 0 );
 		dn.setDepth( depth );
 		dn.setIndex( orderedSize );
 		ordered[orderedSize] = dn.getValue();
@@ -173,62 +625,145 @@ public class DependencyAnalyzer<T>
 	/**
 	 * Returns an array of node lists where the n'th list contains all nodes
 	 * with the depth of n. The n'th level depends on all levels less than n.
+	 * The lists are read-only views over {@link #getOrderedNodes()} which are
+	 * cached between calls, the array is a new copy on each call so modifying
+	 * it doesn't affect the analyzer.
 	 * 
-	 * @return A reference to a newly created array of DependencyNode lists.
+	 * @return A new array of DependencyNode lists.
 	 */
 	public List<DependencyNode<T>>[] getLevelNodes()
 	{
-		List<DependencyNode<T>>[] levelNodes = new ArrayList[maximumDepth + 1];
+		final List<DependencyNode<T>>[] views = getLevelNodeViews();
 
-		for (int i = 0; i <= maximumDepth; i++)
-		{
-			levelNodes[i] = new ArrayList<DependencyNode<T>>();
-		}
+		return Arrays.copyOf( views, views.length );
+	}
 
-		for (int i = 0; i < orderedSize; i++)
+	/**
+	 * Returns an array of values where the n'th list contains all values with
+	 * the depth of n. The n'th level depends on all levels less than n. The
+	 * lists are read-only views over {@link #getOrdered()} which are cached
+	 * between calls, the array is a new copy on each call so modifying it
+	 * doesn't affect the analyzer.
+	 * 
+	 * @return A new array of value lists.
+	 */
+	public List<T>[] getLevels()
+	{
+		final List<T>[] views = getLevelViews();
+
+		return Arrays.copyOf( views, views.length );
+	}
+
+	/**
+	 * @return The cached array of node level views, only recreated when the
+	 *         number of levels changes.
+	 */
+	private List<DependencyNode<T>>[] getLevelNodeViews()
+	{
+		final int levelCount = getLevelCount();
+
+		if (levelNodes == null || levelNodes.length != levelCount)
 		{
-			DependencyNode<T> dn = orderedNodes[i];
+			List<DependencyNode<T>>[] views = new List[levelCount];
 
-			levelNodes[dn.getDepth()].add( dn );
+			for (int i = 0; i < levelCount; i++)
+			{
+				views[i] = ( levelNodes != null && i < levelNodes.length ? levelNodes[i] : new LevelView<DependencyNode<T>>( i, false ) );
+			}
+
+			levelNodes = views;
 		}
 
 		return levelNodes;
 	}
 
 	/**
-	 * Returns an array of values where the n'th list contains all values with
-	 * the depth of n. The n'th level depends on all levels less than n.
-	 * 
-	 * @return A reference to a newly created array of value lists.
+	 * @return The cached array of value level views, only recreated when the
+	 *         number of levels changes.
 	 */
-	public List<T>[] getLevels()
+	private List<T>[] getLevelViews()
 	{
-		List<T>[] levels = new ArrayList[maximumDepth + 1];
+		final int levelCount = getLevelCount();
 
-		for (int i = 0; i <= maximumDepth; i++)
+		if (levels == null || levels.length != levelCount)
 		{
-			levels[i] = new ArrayList<T>();
-		}
+			List<T>[] views = new List[levelCount];
 
-		for (int i = 0; i < orderedSize; i++)
-		{
-			levels[orderedNodes[i].getDepth()].add( ordered[i] );
+			for (int i = 0; i < levelCount; i++)
+			{
+				views[i] = ( levels != null && i < levels.length ? levels[i] : new LevelView<T>( i, true ) );
+			}
+
+			levels = views;
 		}
 
 		return levels;
 	}
 
 	/**
-	 * @return The array of nodes analyzed.
+	 * Returns a read-only view of the values with the given depth.
+	 * 
+	 * @param depth
+	 *        The depth of the level.
+	 * @return The reference to the level view.
+	 */
+	public List<T> getLevel( int depth )
+	{
+		return getLevelViews()[depth];
+	}
+
+	/**
+	 * Returns a read-only view of the nodes with the given depth.
+	 * 
+	 * @param depth
+	 *        The depth of the level.
+	 * @return The reference to the level view.
+	 */
+	public List<DependencyNode<T>> getLevelNodes( int depth )
+	{
+		return getLevelNodeViews()[depth];
+	}
+
+	/**
+	 * @return The array of level offsets where level n occupies the indices
+	 *         from <code>offsets[n]</code> (inclusive) to
+	 *         <code>offsets[n + 1]</code> (exclusive) in {@link #getOrdered()}
+	 *         and {@link #getOrderedNodes()}.
+	 */
+	public int[] getLevelOffsets()
+	{
+		return levelOffsets;
+	}
+
+	/**
+	 * @return The number of levels in the tree.
+	 */
+	public int getLevelCount()
+	{
+		return maximumDepth + 1;
+	}
+
+	/**
+	 * @return The array of nodes analyzed, where {@link #getNodeCount()} is
+	 *         the number of nodes analyzed.
 	 */
 	public DependencyNode<T>[] getNodes()
 	{
 		return nodes;
 	}
 
+	/**
+	 * @return The number of nodes in {@link #getNodes()} that were analyzed.
+	 */
+	public int getNodeCount()
+	{
+		return nodeCount;
+	}
+
 	/**
 	 * @return The array of nodes in the cycle, where {@link #getCycleSize()} is
-	 *         the number of nodes in the cycle.
+	 *         the number of nodes in the cycle. The i'th node in the cycle has
+	 *         an index of {@link #getOrderedSize()} + i.
 	 */
 	public DependencyNode<T>[] getCycle()
 	{
@@ -244,6 +779,35 @@ public class DependencyAnalyzer<T>
 		return cycleSize;
 	}
 
+	/**
+	 * @return The array of nodes whose dependency was ignored by the last
+	 *         {@link #analyzeLenient(Collection, Object...)}, where
+	 *         {@link #getBrokenSize()} is the number of ignored dependencies.
+	 */
+	public DependencyNode<T>[] getBrokenDependents()
+	{
+		return brokenDependents;
+	}
+
+	/**
+	 * @return The array of dependencies ignored by the last
+	 *         {@link #analyzeLenient(Collection, Object...)}, the i'th broken
+	 *         dependent depends on the i'th broken dependency.
+	 */
+	public DependencyNode<T>[] getBrokenDependencies()
+	{
+		return brokenDependencies;
+	}
+
+	/**
+	 * @return The number of dependencies ignored to break cycles, if zero no
+	 *         dependencies were ignored.
+	 */
+	public int getBrokenSize()
+	{
+		return brokenSize;
+	}
+
 	/**
 	 * @return The array of nodes ordered by their dependencies.
 	 */
@@ -261,6 +825,32 @@ public class DependencyAnalyzer<T>
 		return orderedSize;
 	}
 
+	/**
+	 * Returns the index of the given node in the last analysis. An ordered node
+	 * is at its index in {@link #getOrderedNodes()}, and a node left in a cycle
+	 * is indexed after the ordered nodes in the order of {@link #getCycle()}.
+	 * 
+	 * @param dn
+	 *        The node to find.
+	 * @return The index of the node, or -1 if it wasn't analyzed.
+	 */
+	public int indexOf( DependencyNode<T> dn )
+	{
+		final int i = dn.getIndex();
+
+		if (i >= 0 && i < orderedSize)
+		{
+			return ( orderedNodes[i] == dn ? i : -1 );
+		}
+
+		if (i >= orderedSize && i < orderedSize + cycleSize)
+		{
+			return ( cycle[i - orderedSize] == dn ? i : -1 );
+		}
+
+		return -1;
+	}
+
 	/**
 	 * @return The array of values ordered by their dependencies.
 	 */
@@ -277,6 +867,19 @@ public class DependencyAnalyzer<T>
 		return maximumDepth;
 	}
 
+	/**
+	 * Whether this analyzer keeps its arrays and reuses them for the next
+	 * analysis. A reusable analyzer only allocates when the number of nodes or
+	 * levels grows, so the arrays returned may be longer than the number of
+	 * nodes analyzed and are overwritten by the next analysis.
+	 * 
+	 * @return True if this analyzer reuses its arrays, otherwise false.
+	 */
+	public boolean isReusable()
+	{
+		return reusable;
+	}
+
 	/**
 	 * @return True if there was a cycle detected when analyzing the graph.
 	 */
@@ -295,4 +898,52 @@ public class DependencyAnalyzer<T>
 		return valid;
 	}
 
+	/**
+	 * A read-only view of a single level of the ordered values or nodes. The
+	 * view always reflects the most recent analysis.
+	 * 
+	 * @param <E>
+	 *        The element type of the view.
+	 */
+	private class LevelView<E> extends AbstractList<E> implements RandomAccess
+	{
+
+		private final int level;
+		private final boolean values;
+
+		/**
+		 * Instantiates a new LevelView.
+		 * 
+		 * @param level
+		 *        The depth of the level viewed.
+		 * @param values
+		 *        True to view the values, false to view the nodes.
+		 */
+		public LevelView( int level, boolean values )
+		{
+			this.level = level;
+			this.values = values;
+		}
+
+		@Override
+		public E get( int index )
+		{
+			if (index < 0 || index >= size())
+			{
+				throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size() );
+			}
+
+			int i = levelOffsets[level] + index;
+
+			return (E)( values ? ordered[i] : orderedNodes[i] );
+		}
+
+		@Override
+		public int size()
+		{
+			return ( level < getLevelCount() ? levelOffsets[level + 1] - levelOffsets[level] : 0 );
+		}
+
+	}
+
 }
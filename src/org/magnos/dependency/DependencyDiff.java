@@ -0,0 +1,324 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+
+/**
+ * The differences between two versions of a {@link DependencyMap} compared by
+ * key: the keys added and removed, the keys whose value changed, and the
+ * dependencies added and removed. Like {@link DependencyMap#toNodeMap()} only
+ * keys with values and the dependencies between them are compared, and the
+ * comparison is linear in the size of the maps.<br/>
+ * <br/>
+ * A diff can patch the nodes and analysis built from the old map with
+ * {@link #patch(Map, DependencyAnalyzer)} so they match the new map. Unchanged
+ * nodes are kept, and the analysis is updated without ordering the whole graph
+ * again.<br/>
+ * <br/>
+ * The maps are read directly, so neither may be modified while the diff is
+ * taken or used to patch. To compare versions of a
+ * {@link ConcurrentDependencyMap} take the diff between its snapshots.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <K>
+ *        The key of the map.
+ * @param <V>
+ *        The value in the node.
+ */
+public class DependencyDiff<K, V>
+{
+
+	private final DependencyMap<K, V> to;
+	private final List<K> addedKeys = new ArrayList<K>();
+	private final List<K> removedKeys = new ArrayList<K>();
+	private final List<K> changedKeys = new ArrayList<K>();
+	private final List<DependencyEdge<K>> addedEdges = new ArrayList<DependencyEdge<K>>();
+	private final List<DependencyEdge<K>> removedEdges = new ArrayList<DependencyEdge<K>>();
+
+	/**
+	 * Compares two versions of a map.
+	 * 
+	 * @param from
+	 *        The old version of the map.
+	 * @param to
+	 *        The new version of the map.
+	 */
+	public DependencyDiff( DependencyMap<K, V> from, DependencyMap<K, V> to )
+	{
+		final Map<K, V> fromValues = from.getValueMap();
+		final Map<K, V> toValues = to.getValueMap();
+
+		this.to = to;
+
+		for (Entry<K, V> e : toValues.entrySet())
+		{
+			K key = e.getKey();
+
+			if (!fromValues.containsKey( key ))
+			{
+				addedKeys.add( key );
+			}
+			else if (!equal( fromValues.get( key ), e.getValue() ))
+			{
+				changedKeys.add( key );
+			}
+		}
+
+		for (K key : fromValues.keySet())
+		{
+			if (!toValues.containsKey( key ))
+			{
+				removedKeys.add( key );
+			}
+		}
+
+		compare( to, from, addedEdges );
+		compare( from, to, removedEdges );
+	}
+
+	/**
+	 * Adds every dependency in a which is not in b to the given list. Only
+	 * dependencies between keys with values are compared, since those are the
+	 * only dependencies given to the nodes.
+	 */
+	private static <K, V> void compare( DependencyMap<K, V> a, DependencyMap<K, V> b, List<DependencyEdge<K>> out )
+	{
+		final Map<K, V> aValues = a.getValueMap();
+		final Map<K, V> bValues = b.getValueMap();
+		final Map<K, Set<K>> bDependencies = b.getDependencyMap();
+
+		for (Entry<K, Set<K>> e : a.getDependencyMap().entrySet())
+		{
+			K key = e.getKey();
+
+			if (!aValues.containsKey( key ))
+			{
+				continue;
+			}
+
+			Set<K> other = ( bValues.containsKey( key ) ? bDependencies.get( key ) : null );
+
+			for (K dependency : e.getValue())
+			{
+				if (aValues.containsKey( dependency ) && ( other == null || !other.contains( dependency ) || !bValues.containsKey( dependency ) ))
+				{
+					out.add( new DependencyEdge<K>( key, dependency ) );
+				}
+			}
+		}
+	}
+
+	private static boolean equal( Object a, Object b )
+	{
+		return ( a == null ? b == null : a.equals( b ) );
+	}
+
+	/**
+	 * Updates the nodes and analysis built from the old map so they match the
+	 * new map. Removed nodes are taken out of the node map along with the
+	 * dependencies on them, added nodes are appended, and changed values are
+	 * set on the existing nodes. If a key or dependency was added or removed
+	 * only the changed nodes and the nodes which depend on them are placed
+	 * again with {@link DependencyAnalyzer#update}, the other nodes keep their
+	 * relative order and the nodes before the lowest changed level keep their
+	 * index. The whole graph is only ordered again
+	 * when the old analysis wasn't valid or the change introduced a cycle.
+	 * 
+	 * @param nodeMap
+	 *        The nodes built from the old map with
+	 *        {@link DependencyMap#toNodeMap()}, which are modified.
+	 * @param analyzer
+	 *        The analyzer which analyzed the nodes of the old map.
+	 * @return The new list of keys which existed in both maps and whose index
+	 *         or depth in the analysis changed.
+	 */
+	public List<K> patch( Map<K, DependencyNode<V>> nodeMap, DependencyAnalyzer<V> analyzer )
+	{
+		final List<K> moved = new ArrayList<K>();
+
+		for (K key : changedKeys)
+		{
+			DependencyNode<V> dn = nodeMap.get( key );
+			V value = to.get( key );
+
+			if (dn != null)
+			{
+				int i = analyzer.indexOf( dn );
+
+				dn.setValue( value );
+
+				if (i != -1 && i < analyzer.getOrderedSize())
+				{
+					analyzer.getOrdered()[i] = value;
+				}
+			}
+		}
+
+		if (!isStructural())
+		{
+			return moved;
+		}
+
+		final int N = nodeMap.size();
+		final List<K> keys = new ArrayList<K>( N );
+		final int[] index = new int[N];
+		final int[] depth = new int[N];
+		int k = 0;
+
+		for (Entry<K, DependencyNode<V>> e : nodeMap.entrySet())
+		{
+			keys.add( e.getKey() );
+			index[k] = e.getValue().getIndex();
+			depth[k] = e.getValue().getDepth();
+			k++;
+		}
+
+		final Set<DependencyNode<V>> changed = new LinkedHashSet<DependencyNode<V>>();
+		final List<DependencyNode<V>> removed = new ArrayList<DependencyNode<V>>();
+
+		for (DependencyEdge<K> edge : removedEdges)
+		{
+			DependencyNode<V> dependent = nodeMap.get( edge.getDependent() );
+
+			dependent.removeDependency( nodeMap.get( edge.getDependency() ) );
+			changed.add( dependent );
+		}
+
+		for (K key : removedKeys)
+		{
+			DependencyNode<V> dn = nodeMap.remove( key );
+
+			changed.remove( dn );
+			removed.add( dn );
+		}
+
+		for (K key : addedKeys)
+		{
+			nodeMap.put( key, new DependencyNode<V>( to.get( key ) ) );
+		}
+
+		for (DependencyEdge<K> edge : addedEdges)
+		{
+			DependencyNode<V> dependent = nodeMap.get( edge.getDependent() );
+
+			dependent.addDependency( nodeMap.get( edge.getDependency() ) );
+			changed.add( dependent );
+		}
+
+		// Added nodes are placed after the existing nodes of their level.
+		for (K key : addedKeys)
+		{
+			DependencyNode<V> dn = nodeMap.get( key );
+
+			changed.remove( dn );
+			changed.add( dn );
+		}
+
+		// Only the changed nodes and their dependents are placed again, the
+		// whole graph is only ordered when that isn't possible. The current
+		// array keeps the type of the ordered values.
+		if (!analyzer.update( changed, removed ))
+		{
+			if (analyzer.getOrdered() == null)
+			{
+				analyzer.analyze( nodeMap.values() );
+			}
+			else
+			{
+				analyzer.analyze( nodeMap.values(), analyzer.getOrdered() );
+			}
+		}
+
+		for (int i = 0; i < N; i++)
+		{
+			DependencyNode<V> dn = nodeMap.get( keys.get( i ) );
+
+			if (dn != null && ( dn.getIndex() != index[i] || dn.getDepth() != depth[i] ))
+			{
+				moved.add( keys.get( i ) );
+			}
+		}
+
+		return moved;
+	}
+
+	/**
+	 * @return True if a key or dependency was added or removed, which changes
+	 *         the structure of the graph.
+	 */
+	public boolean isStructural()
+	{
+		return !( addedKeys.isEmpty() && removedKeys.isEmpty() && addedEdges.isEmpty() && removedEdges.isEmpty() );
+	}
+
+	/**
+	 * @return True if the maps are the same.
+	 */
+	public boolean isEmpty()
+	{
+		return !isStructural() && changedKeys.isEmpty();
+	}
+
+	/**
+	 * @return The list of keys with a value in the new map but not the old.
+	 */
+	public List<K> getAddedKeys()
+	{
+		return addedKeys;
+	}
+
+	/**
+	 * @return The list of keys with a value in the old map but not the new.
+	 */
+	public List<K> getRemovedKeys()
+	{
+		return removedKeys;
+	}
+
+	/**
+	 * @return The list of keys in both maps whose value changed.
+	 */
+	public List<K> getChangedKeys()
+	{
+		return changedKeys;
+	}
+
+	/**
+	 * @return The list of dependencies in the new map but not the old.
+	 */
+	public List<DependencyEdge<K>> getAddedEdges()
+	{
+		return addedEdges;
+	}
+
+	/**
+	 * @return The list of dependencies in the old map but not the new.
+	 */
+	public List<DependencyEdge<K>> getRemovedEdges()
+	{
+		return removedEdges;
+	}
+
+}
@@ -0,0 +1,94 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+/**
+ * An immutable dependency between two keys, where the dependent depends on
+ * the dependency.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <K>
+ *        The key type.
+ */
+public class DependencyEdge<K>
+{
+
+	private final K dependent;
+	private final K dependency;
+
+	/**
+	 * Instantiates a new DependencyEdge.
+	 * 
+	 * @param dependent
+	 *        The key which depends on the dependency.
+	 * @param dependency
+	 *        The key depended on.
+	 */
+	public DependencyEdge( K dependent, K dependency )
+	{
+		this.dependent = dependent;
+		this.dependency = dependency;
+	}
+
+	/**
+	 * @return The key which depends on the dependency.
+	 */
+	public K getDependent()
+	{
+		return dependent;
+	}
+
+	/**
+	 * @return The key depended on.
+	 */
+	public K getDependency()
+	{
+		return dependency;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return ( dependent == null ? 0 : dependent.hashCode() ) * 31 + ( dependency == null ? 0 : dependency.hashCode() );
+	}
+
+	@Override
+	public boolean equals( Object o )
+	{
+		if (!( o instanceof DependencyEdge ))
+		{
+			return false;
+		}
+
+		DependencyEdge<?> e = (DependencyEdge<?>)o;
+
+		return equal( dependent, e.dependent ) && equal( dependency, e.dependency );
+	}
+
+	private static boolean equal( Object a, Object b )
+	{
+		return ( a == null ? b == null : a.equals( b ) );
+	}
+
+	@Override
+	public String toString()
+	{
+		return dependent + " -> " + dependency;
+	}
+
+}
@@ -0,0 +1,603 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Executes the values of {@link DependencyNode}s on an {@link Executor} while
+ * the graph is still growing. Nodes and dependencies can be added at any time,
+ * including by the tasks executing the values, and are integrated into the
+ * running execution without analyzing the graph again.<br/>
+ * <br/>
+ * Each registered node keeps a count of its unfinished dependencies and the
+ * list of its registered dependents, a node is started as soon as its count
+ * reaches zero. Adding a node registers it and all of its unregistered
+ * dependencies, the only cycles possible are among those new nodes. Adding a
+ * dependency to a registered node only has to search the dependencies which
+ * haven't started, since a node which started has no unfinished dependencies
+ * and so can't lead back to a node which is waiting. A dependency which would
+ * create a cycle, or which is added to a node that already started, is
+ * rejected.<br/>
+ * <br/>
+ * Nodes should only be given dependencies through this engine once they're
+ * registered. If a task fails no more values are started, and the failed value
+ * and the values waiting on it are executed by the next run.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyEngine<T>
+{
+
+	private static final int WAITING = 0;
+	private static final int STARTED = 1;
+	private static final int DONE = 2;
+
+	private final Executor executor;
+	private final Map<DependencyNode<T>, Entry> entries = new IdentityHashMap<DependencyNode<T>, Entry>();
+	private DependencyListener<T> listener;
+	private DependencyTask<T> task;
+	private Throwable failure;
+	private Throwable error;
+	private int running = 0;
+	private boolean abandoned = false;
+	private int completedCount = 0;
+
+	/**
+	 * Instantiates a new DependencyEngine.
+	 * 
+	 * @param executor
+	 *        The executor which executes the values.
+	 */
+	public DependencyEngine( Executor executor )
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Registers the given node and all of its dependencies which aren't
+	 * registered. If a run is in progress the nodes whose dependencies are
+	 * finished are started immediately.
+	 * 
+	 * @param node
+	 *        The node to register.
+	 * @return True if the node is registered, false if the new nodes contain a
+	 *         cycle in which case nothing was registered.
+	 */
+	public boolean add( DependencyNode<T> node )
+	{
+		final List<Entry> start = new ArrayList<Entry>();
+		boolean added;
+
+		synchronized (this)
+		{
+			added = register( node, start );
+		}
+
+		start( start );
+
+		return added;
+	}
+
+	/**
+	 * Adds a dependency to the given node, registering either node if they
+	 * aren't registered yet.
+	 * 
+	 * @param node
+	 *        The node which depends on the dependency.
+	 * @param dependency
+	 *        The dependency to add.
+	 * @return True if the dependency was added, false if the node already
+	 *         started or the dependency would create a cycle.
+	 */
+	public boolean addDependency( DependencyNode<T> node, DependencyNode<T> dependency )
+	{
+		final List<Entry> start = new ArrayList<Entry>();
+		boolean added;
+
+		synchronized (this)
+		{
+			added = link( node, dependency, start );
+		}
+
+		start( start );
+
+		return added;
+	}
+
+	private boolean link( DependencyNode<T> node, DependencyNode<T> dependency, List<Entry> start )
+	{
+		Entry e = entries.get( node );
+
+		if (e == null)
+		{
+			if (node.getDependencies().contains( dependency ))
+			{
+				return register( node, start );
+			}
+
+			node.addDependency( dependency );
+
+			if (!register( node, start ))
+			{
+				node.removeDependency( dependency );
+
+				return false;
+			}
+
+			return true;
+		}
+
+		if (e.state != WAITING || reaches( dependency, node ))
+		{
+			return false;
+		}
+
+		if (node.getDependencies().contains( dependency ))
+		{
+			return true;
+		}
+
+		if (!entries.containsKey( dependency ) && !register( dependency, start ))
+		{
+			return false;
+		}
+
+		Entry d = entries.get( dependency );
+
+		node.addDependency( dependency );
+
+		if (d.state != DONE)
+		{
+			e.pending++;
+			d.dependents.add( e );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns whether the target can be reached from the given node by
+	 * following dependencies, searching only nodes which haven't started.
+	 */
+	private boolean reaches( DependencyNode<T> from, DependencyNode<T> target )
+	{
+		final Map<DependencyNode<T>, Boolean> visited = new IdentityHashMap<DependencyNode<T>, Boolean>();
+		final List<DependencyNode<T>> stack = new ArrayList<DependencyNode<T>>();
+
+		stack.add( from );
+		visited.put( from, Boolean.TRUE );
+
+		while (!stack.isEmpty())
+		{
+			DependencyNode<T> dn = stack.remove( stack.size() - 1 );
+
+			if (dn == target)
+			{
+				return true;
+			}
+
+			Entry e = entries.get( dn );
+
+			if (e != null && e.state != WAITING)
+			{
+				continue;
+			}
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				if (visited.put( dependency, Boolean.TRUE ) == null)
+				{
+					stack.add( dependency );
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Registers the given node and its unregistered dependencies, dependencies
+	 * first, unless they contain a cycle.
+	 */
+	private boolean register( DependencyNode<T> node, List<Entry> start )
+	{
+		if (entries.containsKey( node ))
+		{
+			return true;
+		}
+
+		final Map<DependencyNode<T>, Boolean> visiting = new IdentityHashMap<DependencyNode<T>, Boolean>();
+		final List<DependencyNode<T>> added = new ArrayList<DependencyNode<T>>();
+		final List<DependencyNode<T>> path = new ArrayList<DependencyNode<T>>();
+		final List<Iterator<DependencyNode<T>>> iterators = new ArrayList<Iterator<DependencyNode<T>>>();
+
+		visiting.put( node, Boolean.TRUE );
+		path.add( node );
+		iterators.add( node.getDependencies().iterator() );
+
+		// A depth-first search over the unregistered nodes, a node is visiting
+		// (TRUE) while it's on the path and visited (FALSE) once it's added.
+		while (!path.isEmpty())
+		{
+			int top = path.size() - 1;
+			Iterator<DependencyNode<T>> iterator = iterators.get( top );
+
+			if (iterator.hasNext())
+			{
+				DependencyNode<T> dependency = iterator.next();
+
+				if (entries.containsKey( dependency ))
+				{
+					continue;
+				}
+
+				Boolean state = visiting.get( dependency );
+
+				if (state == Boolean.TRUE)
+				{
+					return false;
+				}
+
+				if (state == null)
+				{
+					visiting.put( dependency, Boolean.TRUE );
+					path.add( dependency );
+					iterators.add( dependency.getDependencies().iterator() );
+				}
+			}
+			else
+			{
+				DependencyNode<T> dn = path.remove( top );
+
+				iterators.remove( top );
+				visiting.put( dn, Boolean.FALSE );
+				added.add( dn );
+			}
+		}
+
+		for (DependencyNode<T> dn : added)
+		{
+			Entry e = new Entry( dn );
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				Entry d = entries.get( dependency );
+
+				if (d.state != DONE)
+				{
+					e.pending++;
+					d.dependents.add( e );
+				}
+			}
+
+			entries.put( dn, e );
+
+			if (e.pending == 0 && isDispatching())
+			{
+				ready( e, start );
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Executes every registered value which hasn't finished, including values
+	 * added while running, and waits for them to finish. If a task fails no
+	 * more values are started, the values already executing are waited on, and
+	 * the failure is given by {@link #getError()}.
+	 * 
+	 * @param task
+	 *        The task to execute for each value.
+	 * @return True if every value executed, false if a task failed or a run is
+	 *         already in progress.
+	 * @throws InterruptedException
+	 *         The thread was interrupted while waiting for values to execute.
+	 */
+	public boolean run( DependencyTask<T> task ) throws InterruptedException
+	{
+		final List<Entry> start = new ArrayList<Entry>();
+
+		synchronized (this)
+		{
+			if (this.task != null)
+			{
+				return false;
+			}
+
+			this.task = task;
+			this.failure = null;
+			this.error = null;
+
+			for (Entry e : entries.values())
+			{
+				if (e.state == WAITING && e.pending == 0)
+				{
+					ready( e, start );
+				}
+			}
+		}
+
+		start( start );
+
+		synchronized (this)
+		{
+			try
+			{
+				while (running > 0)
+				{
+					wait();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				failure = ( failure == null ? e : failure );
+
+				// The values still executing finish the run once they're done,
+				// if none are left the run ends now.
+				if (running == 0)
+				{
+					end();
+				}
+				else
+				{
+					abandoned = true;
+				}
+
+				throw e;
+			}
+
+			end();
+
+			return ( error == null );
+		}
+	}
+
+	private void end()
+	{
+		task = null;
+		error = failure;
+		abandoned = false;
+	}
+
+	private boolean isDispatching()
+	{
+		return ( task != null && failure == null );
+	}
+
+	/**
+	 * Marks the given entry as started, it's submitted to the executor once
+	 * the lock is released.
+	 */
+	private void ready( Entry e, List<Entry> start )
+	{
+		e.state = STARTED;
+		running++;
+		start.add( e );
+	}
+
+	/**
+	 * Submits the given entries, which have been marked as started, to the
+	 * executor. Each started entry counts as running until it finishes, so a
+	 * run can't end while entries are being submitted.
+	 */
+	private void start( List<Entry> start )
+	{
+		final DependencyTask<T> task;
+		final DependencyListener<T> listener;
+
+		if (start.isEmpty())
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			task = this.task;
+			listener = this.listener;
+		}
+
+		for (final Entry e : start)
+		{
+			if (listener != null)
+			{
+				listener.ready( e.node, System.nanoTime() );
+			}
+
+			try
+			{
+				executor.execute( new Runnable()
+				{
+					public void run()
+					{
+						boolean success = false;
+
+						if (listener != null)
+						{
+							listener.started( e.node, System.nanoTime() );
+						}
+
+						try
+						{
+							task.execute( e.node.getValue() );
+							success = true;
+						}
+						catch (Throwable t)
+						{
+							fail( t );
+						}
+						finally
+						{
+							if (listener != null)
+							{
+								listener.finished( e.node, System.nanoTime() );
+							}
+
+							finish( e, success );
+						}
+					}
+				} );
+			}
+			catch (RuntimeException t)
+			{
+				fail( t );
+				finish( e, false );
+			}
+		}
+	}
+
+	private synchronized void fail( Throwable t )
+	{
+		if (failure == null)
+		{
+			failure = t;
+		}
+	}
+
+	/**
+	 * Marks a value as finished and starts the dependents it was holding back.
+	 */
+	private void finish( Entry e, boolean success )
+	{
+		final List<Entry> start = new ArrayList<Entry>();
+
+		synchronized (this)
+		{
+			if (success)
+			{
+				e.state = DONE;
+				completedCount++;
+
+				for (Entry d : e.dependents)
+				{
+					if (--d.pending == 0 && isDispatching())
+					{
+						ready( d, start );
+					}
+				}
+
+				e.dependents.clear();
+			}
+			else
+			{
+				e.state = WAITING;
+			}
+		}
+
+		start( start );
+
+		synchronized (this)
+		{
+			if (--running == 0)
+			{
+				if (abandoned)
+				{
+					end();
+				}
+
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the value of the given node has been executed.
+	 * 
+	 * @param node
+	 *        The node to check.
+	 * @return True if the node is registered and finished executing.
+	 */
+	public synchronized boolean isComplete( DependencyNode<T> node )
+	{
+		Entry e = entries.get( node );
+
+		return ( e != null && e.state == DONE );
+	}
+
+	/**
+	 * @return The number of registered nodes.
+	 */
+	public synchronized int getNodeCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return The number of registered nodes which finished executing.
+	 */
+	public synchronized int getCompletedCount()
+	{
+		return completedCount;
+	}
+
+	/**
+	 * @return The listener notified of each value's execution, or null if
+	 *         there is none.
+	 */
+	public synchronized DependencyListener<T> getListener()
+	{
+		return listener;
+	}
+
+	/**
+	 * Sets the listener notified of each value's execution.
+	 * 
+	 * @param listener
+	 *        The listener, or null to not notify a listener.
+	 */
+	public synchronized void setListener( DependencyListener<T> listener )
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * @return The failure of the last run, or null if it didn't fail.
+	 */
+	public synchronized Throwable getError()
+	{
+		return error;
+	}
+
+	/**
+	 * The execution state of a registered node.
+	 */
+	private class Entry
+	{
+
+		private final DependencyNode<T> node;
+		private final List<Entry> dependents = new ArrayList<Entry>();
+		private int pending = 0;
+		private int state = WAITING;
+
+		public Entry( DependencyNode<T> node )
+		{
+			this.node = node;
+		}
+
+	}
+
+}
@@ -0,0 +1,400 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Evaluates the values of an analyzed graph in dependency order where the
+ * result of each node is a function of the results of its dependencies. The
+ * result of each node is cached alongside the set of dependency values it was
+ * computed from, so re-evaluating only recomputes nodes whose dependencies or
+ * dependency results changed. When a recomputed
+ * result equals the previous result, its dependents are not recomputed (early
+ * cutoff). <br/>
+ * <br/>
+ * Results are keyed by node value, so the same evaluator can be used across
+ * graphs rebuilt with {@link DependencyMap#toAnalyzer()}. When the value of a
+ * node itself changes call {@link #invalidate(Object)}. After each evaluation
+ * the results of values which weren't in the evaluated graph are dropped, and
+ * then results are evicted while the total weight exceeds
+ * {@link #setMaximumWeight(long)}. The deepest results are evicted first (the
+ * least recently used first within a depth), so the dependencies of a kept
+ * result are kept as well, and recomputing an evicted result never causes a
+ * kept result to be recomputed. The bound is only applied at the end of an
+ * evaluation, so during one the cache holds a result for every value in the
+ * graph.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ * @param <R>
+ *        The result type.
+ */
+public class DependencyEvaluator<T, R>
+{
+
+	/**
+	 * Computes the result of a value given the results of its dependencies.
+	 * 
+	 * @param <T>
+	 *        The {@link DependencyNode} value type.
+	 * @param <R>
+	 *        The result type.
+	 */
+	public static interface Function<T, R>
+	{
+
+		/**
+		 * Evaluates the given value.
+		 * 
+		 * @param value
+		 *        The value of the node.
+		 * @param dependencyResults
+		 *        The results of the node's dependencies keyed by their value.
+		 * @return The result of the node.
+		 */
+		public R evaluate( T value, Map<T, R> dependencyResults );
+	}
+
+	/**
+	 * Computes the weight of a cached result.
+	 * 
+	 * @param <T>
+	 *        The {@link DependencyNode} value type.
+	 * @param <R>
+	 *        The result type.
+	 */
+	public static interface Weigher<T, R>
+	{
+
+		/**
+		 * @return The non-negative weight of the given result.
+		 */
+		public int weigh( T value, R result );
+	}
+
+	private static final Comparator<Entry<?, ?>> DEEPEST_FIRST = new Comparator<Entry<?, ?>>()
+	{
+		public int compare( Entry<?, ?> a, Entry<?, ?> b )
+		{
+			return ( a.depth == b.depth ? 0 : ( a.depth > b.depth ? -1 : 1 ) );
+		}
+	};
+
+	private final Function<T, R> function;
+	private final Map<T, Entry<T, R>> cache = new LinkedHashMap<T, Entry<T, R>>( 16, 0.75f, true );
+	private Weigher<T, R> weigher;
+	private long maximumWeight = Long.MAX_VALUE;
+	private long weight = 0;
+	private long revision = 0;
+	private int recomputedCount = 0;
+
+	/**
+	 * Instantiates a new DependencyEvaluator with an unbounded cache.
+	 * 
+	 * @param function
+	 *        The function which computes the result of each node.
+	 */
+	public DependencyEvaluator( Function<T, R> function )
+	{
+		this.function = function;
+	}
+
+	/**
+	 * Evaluates the nodes of the analyzer in order, recomputing only the nodes
+	 * whose dependencies, dependency results, or values (see
+	 * {@link #invalidate(Object)}) changed since the last evaluation.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which successfully analyzed the graph.
+	 * @return True if the graph was evaluated, false if it had a cycle.
+	 */
+	public boolean evaluate( DependencyAnalyzer<T> analyzer )
+	{
+		recomputedCount = 0;
+
+		if (!analyzer.isValid())
+		{
+			return false;
+		}
+
+		final DependencyNode<T>[] nodes = analyzer.getOrderedNodes();
+		final int N = analyzer.getOrderedSize();
+
+		revision++;
+
+		for (int i = 0; i < N; i++)
+		{
+			DependencyNode<T> dn = nodes[i];
+			T value = dn.getValue();
+			Entry<T, R> entry = cache.get( value );
+
+			long changed = 0;
+			boolean same = ( entry != null && entry.dependencyCount == dn.getDependencyCount() );
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				Entry<T, R> input = cache.get( dependency.getValue() );
+
+				if (input == null)
+				{
+					same = false;
+				}
+				else
+				{
+					changed = Math.max( changed, input.changedAt );
+				}
+
+				same = same && entry.dependencies.contains( dependency.getValue() );
+			}
+
+			// The result is current if the set of dependencies is the same
+			// and none of their results changed since it was last verified.
+			if (same && !entry.invalid && changed <= entry.verifiedAt)
+			{
+				entry.verifiedAt = revision;
+				entry.depth = dn.getDepth();
+
+				continue;
+			}
+
+			Map<T, R> inputs = new HashMap<T, R>();
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				Entry<T, R> input = cache.get( dependency.getValue() );
+
+				inputs.put( dependency.getValue(), input == null ? null : input.result );
+			}
+
+			R result = function.evaluate( value, inputs );
+
+			if (entry == null)
+			{
+				entry = new Entry<T, R>();
+				entry.value = value;
+				cache.put( value, entry );
+				entry.changedAt = revision;
+			}
+			else
+			{
+				weight -= entry.weight;
+
+				if (!equals( entry.result, result ))
+				{
+					entry.changedAt = revision;
+				}
+			}
+
+			entry.result = result;
+			entry.dependencies = new HashSet<T>( inputs.keySet() );
+			entry.dependencyCount = dn.getDependencyCount();
+			entry.verifiedAt = revision;
+			entry.depth = dn.getDepth();
+			entry.invalid = false;
+			entry.weight = ( weigher == null ? 1 : weigher.weigh( value, result ) );
+
+			weight += entry.weight;
+			recomputedCount++;
+		}
+
+		// Results of values which are no longer in the graph are dropped.
+		Iterator<Entry<T, R>> stale = cache.values().iterator();
+
+		while (stale.hasNext())
+		{
+			Entry<T, R> entry = stale.next();
+
+			if (entry.verifiedAt != revision)
+			{
+				weight -= entry.weight;
+				stale.remove();
+			}
+		}
+
+		evict();
+
+		return true;
+	}
+
+	/**
+	 * Evicts the deepest results until the total weight is within the maximum
+	 * weight, the least recently used first within a depth.
+	 */
+	private void evict()
+	{
+		if (weight <= maximumWeight)
+		{
+			return;
+		}
+
+		// The cache iterates from least to most recently used and the sort is
+		// stable, so ties keep that order.
+		List<Entry<T, R>> entries = new ArrayList<Entry<T, R>>( cache.values() );
+
+		Collections.sort( entries, DEEPEST_FIRST );
+
+		for (int i = 0; i < entries.size() && weight > maximumWeight; i++)
+		{
+			Entry<T, R> entry = entries.get( i );
+
+			weight -= entry.weight;
+			cache.remove( entry.value );
+		}
+	}
+
+	/**
+	 * Marks the result of the given value as out of date, the next evaluation
+	 * will recompute it and any dependents if its result changes.
+	 * 
+	 * @param value
+	 *        The value which changed.
+	 */
+	public void invalidate( T value )
+	{
+		Entry<T, R> entry = cache.get( value );
+
+		if (entry != null)
+		{
+			entry.invalid = true;
+		}
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear()
+	{
+		cache.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Returns the cached result of the given value.
+	 * 
+	 * @param value
+	 *        The value of the node.
+	 * @return The result, or null if the value has no cached result.
+	 */
+	public R getResult( T value )
+	{
+		Entry<T, R> entry = cache.get( value );
+
+		return ( entry == null ? null : entry.result );
+	}
+
+	/**
+	 * @return The number of nodes recomputed in the last evaluation.
+	 */
+	public int getRecomputedCount()
+	{
+		return recomputedCount;
+	}
+
+	/**
+	 * @return The number of cached results.
+	 */
+	public int getCacheSize()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return The total weight of the cached results.
+	 */
+	public long getWeight()
+	{
+		return weight;
+	}
+
+	/**
+	 * @return The maximum total weight of the cached results.
+	 */
+	public long getMaximumWeight()
+	{
+		return maximumWeight;
+	}
+
+	/**
+	 * Sets the maximum total weight of the cached results. Without a
+	 * {@link Weigher} each result weighs 1.
+	 * 
+	 * @param maximumWeight
+	 *        The maximum total weight.
+	 */
+	public void setMaximumWeight( long maximumWeight )
+	{
+		this.maximumWeight = maximumWeight;
+
+		evict();
+	}
+
+	/**
+	 * @return The weigher of results, or null if each result weighs 1.
+	 */
+	public Weigher<T, R> getWeigher()
+	{
+		return weigher;
+	}
+
+	/**
+	 * Sets the weigher of results, this only applies to results computed
+	 * afterwards.
+	 * 
+	 * @param weigher
+	 *        The weigher of results, or null if each result weighs 1.
+	 */
+	public void setWeigher( Weigher<T, R> weigher )
+	{
+		this.weigher = weigher;
+	}
+
+	private static boolean equals( Object a, Object b )
+	{
+		return ( a == b || ( a != null && a.equals( b ) ) );
+	}
+
+	/**
+	 * A cached result and the state it was computed from.
+	 */
+	private static class Entry<T, R>
+	{
+
+		private T value;
+		private R result;
+		private Set<T> dependencies;
+		private int dependencyCount;
+		private long changedAt;
+		private long verifiedAt;
+		private int depth;
+		private boolean invalid;
+		private int weight;
+	}
+
+}
@@ -0,0 +1,611 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+
+/**
+ * Exports the results of a {@link DependencyAnalyzer} or the contents of a
+ * {@link DependencyMap} to a {@link WritableByteChannel} as DOT, JSON lines
+ * or a compact binary form. Output is encoded directly into a fixed size
+ * buffer which is written to the channel whenever it fills, so the memory
+ * used doesn't depend on the size of the graph.<br/>
+ * <br/>
+ * Nodes of an analyzer are identified by their index, cycle nodes included.
+ * Call {@link #flush()} once everything has been exported.<br/>
+ * <br/>
+ * The binary form is a sequence of big-endian integers, where a string is its
+ * UTF-8 length followed by its bytes. An analysis is the magic
+ * {@link #MAGIC}, the kind {@link #KIND_ANALYSIS}, valid (0 or 1), the number
+ * of nodes, the number of ordered nodes and the number of levels, then for
+ * each node its depth, its value as a string, its number of dependencies and
+ * their indices, then the number of broken dependencies followed by pairs of
+ * dependent and dependency indices. A map is the magic, the kind
+ * {@link #KIND_MAP}, then for each key the key as a string, 0 or 1 whether it
+ * has a value, the value as a string if it has one, its number of
+ * dependencies and each dependency as a string, and finally a -1.
+ * 
+ * @author Philip Diffenderfer
+ */
+public class DependencyExporter
+{
+
+	/**
+	 * The first integer of every binary export.
+	 */
+	public static final int MAGIC = 0x44504E5A;
+
+	/**
+	 * The kind of a binary export of an analyzer.
+	 */
+	public static final int KIND_ANALYSIS = 1;
+
+	/**
+	 * The kind of a binary export of a map.
+	 */
+	public static final int KIND_MAP = 2;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Instantiates a new DependencyExporter with an 8KB buffer.
+	 * 
+	 * @param channel
+	 *        The channel to export to.
+	 */
+	public DependencyExporter( WritableByteChannel channel )
+	{
+		this( channel, 8192 );
+	}
+
+	/**
+	 * Instantiates a new DependencyExporter.
+	 * 
+	 * @param channel
+	 *        The channel to export to.
+	 * @param bufferSize
+	 *        The size of the buffer in bytes, at least 16.
+	 */
+	public DependencyExporter( WritableByteChannel channel, int bufferSize )
+	{
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect( Math.max( 16, bufferSize ) );
+	}
+
+	/**
+	 * Exports an analyzer as a DOT digraph, nodes of the same level are ranked
+	 * together and cycle nodes are colored red. An edge points from a node to
+	 * its dependency.
+	 * 
+	 * @param analyzer
+	 *        The analyzer to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <T> void exportDot( DependencyAnalyzer<T> analyzer ) throws IOException
+	{
+		final DependencyNode<T>[] ordered = analyzer.getOrderedNodes();
+		final int[] offsets = analyzer.getLevelOffsets();
+		final int levelCount = analyzer.getLevelCount();
+
+		write( "digraph dependencies {\n" );
+
+		for (int level = 0; level < levelCount; level++)
+		{
+			write( "  { rank=same;" );
+
+			for (int i = offsets[level]; i < offsets[level + 1]; i++)
+			{
+				write( " n" );
+				write( i );
+				write( " [label=\"" );
+				writeEscaped( String.valueOf( ordered[i].getValue() ), false );
+				write( "\"];" );
+			}
+
+			write( " }\n" );
+		}
+
+		for (int i = 0; i < analyzer.getCycleSize(); i++)
+		{
+			write( "  n" );
+			write( analyzer.getOrderedSize() + i );
+			write( " [label=\"" );
+			writeEscaped( String.valueOf( analyzer.getCycle()[i].getValue() ), false );
+			write( "\" color=red];\n" );
+		}
+
+		for (int i = 0, n = getNodeCount( analyzer ); i < n; i++)
+		{
+			for (DependencyNode<T> dependency : getNode( analyzer, i ).getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1)
+				{
+					write( "  n" );
+					write( i );
+					write( " -> n" );
+					write( j );
+					write( ";\n" );
+				}
+			}
+		}
+
+		for (int i = 0; i < analyzer.getBrokenSize(); i++)
+		{
+			write( "  n" );
+			write( analyzer.getBrokenDependents()[i].getIndex() );
+			write( " -> n" );
+			write( analyzer.getBrokenDependencies()[i].getIndex() );
+			write( " [style=dashed color=red];\n" );
+		}
+
+		write( "}\n" );
+	}
+
+	/**
+	 * Exports an analyzer as JSON lines: a line describing the analysis, a line
+	 * per node, and a line per broken dependency.
+	 * 
+	 * @param analyzer
+	 *        The analyzer to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <T> void exportJson( DependencyAnalyzer<T> analyzer ) throws IOException
+	{
+		write( "{\"type\":\"analysis\",\"valid\":" );
+		write( analyzer.isValid() ? "true" : "false" );
+		write( ",\"size\":" );
+		write( getNodeCount( analyzer ) );
+		write( ",\"orderedSize\":" );
+		write( analyzer.getOrderedSize() );
+		write( ",\"levels\":" );
+		write( analyzer.getLevelCount() );
+		write( ",\"cycleSize\":" );
+		write( analyzer.getCycleSize() );
+		write( ",\"brokenSize\":" );
+		write( analyzer.getBrokenSize() );
+		write( "}\n" );
+
+		for (int i = 0, n = getNodeCount( analyzer ); i < n; i++)
+		{
+			DependencyNode<T> dn = getNode( analyzer, i );
+			boolean first = true;
+
+			write( "{\"type\":\"node\",\"index\":" );
+			write( i );
+			write( ",\"depth\":" );
+			write( i < analyzer.getOrderedSize() ? dn.getDepth() : -1 );
+			write( ",\"value\":\"" );
+			writeEscaped( String.valueOf( dn.getValue() ), true );
+			write( "\",\"dependencies\":[" );
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1)
+				{
+					if (!first)
+					{
+						write( "," );
+					}
+
+					write( j );
+					first = false;
+				}
+			}
+
+			write( "]}\n" );
+		}
+
+		for (int i = 0; i < analyzer.getBrokenSize(); i++)
+		{
+			write( "{\"type\":\"broken\",\"dependent\":" );
+			write( analyzer.getBrokenDependents()[i].getIndex() );
+			write( ",\"dependency\":" );
+			write( analyzer.getBrokenDependencies()[i].getIndex() );
+			write( "}\n" );
+		}
+	}
+
+	/**
+	 * Exports an analyzer in the binary form.
+	 * 
+	 * @param analyzer
+	 *        The analyzer to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <T> void exportBinary( DependencyAnalyzer<T> analyzer ) throws IOException
+	{
+		final int N = getNodeCount( analyzer );
+
+		writeInt( MAGIC );
+		writeInt( KIND_ANALYSIS );
+		writeInt( analyzer.isValid() ? 1 : 0 );
+		writeInt( N );
+		writeInt( analyzer.getOrderedSize() );
+		writeInt( analyzer.getLevelCount() );
+
+		for (int i = 0; i < N; i++)
+		{
+			DependencyNode<T> dn = getNode( analyzer, i );
+			int dependencyCount = 0;
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				if (analyzer.indexOf( dependency ) != -1)
+				{
+					dependencyCount++;
+				}
+			}
+
+			writeInt( i < analyzer.getOrderedSize() ? dn.getDepth() : -1 );
+			writeString( String.valueOf( dn.getValue() ) );
+			writeInt( dependencyCount );
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1)
+				{
+					writeInt( j );
+				}
+			}
+		}
+
+		writeInt( analyzer.getBrokenSize() );
+
+		for (int i = 0; i < analyzer.getBrokenSize(); i++)
+		{
+			writeInt( analyzer.getBrokenDependents()[i].getIndex() );
+			writeInt( analyzer.getBrokenDependencies()[i].getIndex() );
+		}
+	}
+
+	/**
+	 * Exports a map as a DOT digraph where nodes are named by their key. An
+	 * edge points from a key to its dependency.
+	 * 
+	 * @param map
+	 *        The map to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <K, V> void exportDot( DependencyMap<K, V> map ) throws IOException
+	{
+		write( "digraph dependencies {\n" );
+
+		for (Entry<K, V> e : map.getValueMap().entrySet())
+		{
+			write( "  \"" );
+			writeEscaped( String.valueOf( e.getKey() ), false );
+			write( "\" [label=\"" );
+			writeEscaped( String.valueOf( e.getValue() ), false );
+			write( "\"];\n" );
+		}
+
+		for (Entry<K, Set<K>> e : map.getDependencyMap().entrySet())
+		{
+			for (K dependency : e.getValue())
+			{
+				write( "  \"" );
+				writeEscaped( String.valueOf( e.getKey() ), false );
+				write( "\" -> \"" );
+				writeEscaped( String.valueOf( dependency ), false );
+				write( "\";\n" );
+			}
+		}
+
+		write( "}\n" );
+	}
+
+	/**
+	 * Exports a map as JSON lines, a line per key with its value (null if it
+	 * has none) and the keys it depends on.
+	 * 
+	 * @param map
+	 *        The map to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <K, V> void exportJson( DependencyMap<K, V> map ) throws IOException
+	{
+		final Map<K, V> values = map.getValueMap();
+		final Map<K, Set<K>> dependencies = map.getDependencyMap();
+
+		for (Entry<K, V> e : values.entrySet())
+		{
+			writeJsonEntry( e.getKey(), true, e.getValue(), dependencies.get( e.getKey() ) );
+		}
+
+		for (Entry<K, Set<K>> e : dependencies.entrySet())
+		{
+			if (!values.containsKey( e.getKey() ))
+			{
+				writeJsonEntry( e.getKey(), false, null, e.getValue() );
+			}
+		}
+	}
+
+	private <K, V> void writeJsonEntry( K key, boolean hasValue, V value, Set<K> dependencies ) throws IOException
+	{
+		boolean first = true;
+
+		write( "{\"key\":\"" );
+		writeEscaped( String.valueOf( key ), true );
+		write( "\",\"value\":" );
+
+		if (hasValue)
+		{
+			write( "\"" );
+			writeEscaped( String.valueOf( value ), true );
+			write( "\"" );
+		}
+		else
+		{
+			write( "null" );
+		}
+
+		write( ",\"dependencies\":[" );
+
+		if (dependencies != null)
+		{
+			for (K dependency : dependencies)
+			{
+				write( first ? "\"" : ",\"" );
+				writeEscaped( String.valueOf( dependency ), true );
+				write( "\"" );
+				first = false;
+			}
+		}
+
+		write( "]}\n" );
+	}
+
+	/**
+	 * Exports a map in the binary form.
+	 * 
+	 * @param map
+	 *        The map to export.
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public <K, V> void exportBinary( DependencyMap<K, V> map ) throws IOException
+	{
+		final Map<K, V> values = map.getValueMap();
+		final Map<K, Set<K>> dependencies = map.getDependencyMap();
+
+		writeInt( MAGIC );
+		writeInt( KIND_MAP );
+
+		for (Entry<K, V> e : values.entrySet())
+		{
+			writeBinaryEntry( e.getKey(), true, e.getValue(), dependencies.get( e.getKey() ) );
+		}
+
+		for (Entry<K, Set<K>> e : dependencies.entrySet())
+		{
+			if (!values.containsKey( e.getKey() ))
+			{
+				writeBinaryEntry( e.getKey(), false, null, e.getValue() );
+			}
+		}
+
+		writeInt( -1 );
+	}
+
+	private <K, V> void writeBinaryEntry( K key, boolean hasValue, V value, Set<K> dependencies ) throws IOException
+	{
+		writeString( String.valueOf( key ) );
+		writeInt( hasValue ? 1 : 0 );
+
+		if (hasValue)
+		{
+			writeString( String.valueOf( value ) );
+		}
+
+		if (dependencies == null)
+		{
+			writeInt( 0 );
+		}
+		else
+		{
+			writeInt( dependencies.size() );
+
+			for (K dependency : dependencies)
+			{
+				writeString( String.valueOf( dependency ) );
+			}
+		}
+	}
+
+	/**
+	 * Writes everything buffered to the channel.
+	 * 
+	 * @throws IOException
+	 *         The channel could not be written to.
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write( buffer );
+		}
+
+		buffer.clear();
+	}
+
+	private void ensure( int bytes ) throws IOException
+	{
+		if (buffer.remaining() < bytes)
+		{
+			flush();
+		}
+	}
+
+	private void writeInt( int x ) throws IOException
+	{
+		ensure( 4 );
+		buffer.putInt( x );
+	}
+
+	private void write( int x ) throws IOException
+	{
+		write( Integer.toString( x ) );
+	}
+
+	private void write( String s ) throws IOException
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			writeChar( s.charAt( i ), s, i );
+		}
+	}
+
+	private void writeString( String s ) throws IOException
+	{
+		int length = 0;
+
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt( i );
+
+			if (c < 0x80)
+			{
+				length += 1;
+			}
+			else if (c < 0x800)
+			{
+				length += 2;
+			}
+			else if (Character.isHighSurrogate( c ) && i + 1 < s.length() && Character.isLowSurrogate( s.charAt( i + 1 ) ))
+			{
+				length += 4;
+				i++;
+			}
+			else
+			{
+				length += 3;
+			}
+		}
+
+		writeInt( length );
+		write( s );
+	}
+
+	/**
+	 * Writes a string escaped for a JSON or DOT string literal.
+	 */
+	private void writeEscaped( String s, boolean json ) throws IOException
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt( i );
+
+			if (c == '"' || c == '\\')
+			{
+				ensure( 2 );
+				buffer.put( (byte)'\\' );
+				buffer.put( (byte)c );
+			}
+			else if (c == '\n')
+			{
+				write( "\\n" );
+			}
+			else if (c < 0x20 && json)
+			{
+				write( "\\u00" );
+				write( Character.forDigit( c >> 4, 16 ) + "" + Character.forDigit( c & 0xF, 16 ) );
+			}
+			else
+			{
+				writeChar( c, s, i );
+			}
+		}
+	}
+
+	/**
+	 * Writes the UTF-8 bytes of the character at the given index, a surrogate
+	 * pair is written when the high surrogate is seen.
+	 */
+	private void writeChar( char c, String s, int i ) throws IOException
+	{
+		ensure( 4 );
+
+		if (c < 0x80)
+		{
+			buffer.put( (byte)c );
+		}
+		else if (c < 0x800)
+		{
+			buffer.put( (byte)( 0xC0 | ( c >> 6 ) ) );
+			buffer.put( (byte)( 0x80 | ( c & 0x3F ) ) );
+		}
+		else if (Character.isHighSurrogate( c ) && i + 1 < s.length() && Character.isLowSurrogate( s.charAt( i + 1 ) ))
+		{
+			int cp = Character.toCodePoint( c, s.charAt( i + 1 ) );
+
+			buffer.put( (byte)( 0xF0 | ( cp >> 18 ) ) );
+			buffer.put( (byte)( 0x80 | ( ( cp >> 12 ) & 0x3F ) ) );
+			buffer.put( (byte)( 0x80 | ( ( cp >> 6 ) & 0x3F ) ) );
+			buffer.put( (byte)( 0x80 | ( cp & 0x3F ) ) );
+		}
+		else if (Character.isLowSurrogate( c ) && i > 0 && Character.isHighSurrogate( s.charAt( i - 1 ) ))
+		{
+			// Written with its high surrogate.
+		}
+		else
+		{
+			buffer.put( (byte)( 0xE0 | ( c >> 12 ) ) );
+			buffer.put( (byte)( 0x80 | ( ( c >> 6 ) & 0x3F ) ) );
+			buffer.put( (byte)( 0x80 | ( c & 0x3F ) ) );
+		}
+	}
+
+	/**
+	 * @return The number of nodes analyzed, ordered and cycle nodes.
+	 */
+	private static int getNodeCount( DependencyAnalyzer<?> analyzer )
+	{
+		return analyzer.getOrderedSize() + analyzer.getCycleSize();
+	}
+
+	/**
+	 * @return The node of the analyzer with the given index.
+	 */
+	private static <T> DependencyNode<T> getNode( DependencyAnalyzer<T> analyzer, int index )
+	{
+		int orderedSize = analyzer.getOrderedSize();
+
+		return ( index < orderedSize ? analyzer.getOrderedNodes()[index] : analyzer.getCycle()[index - orderedSize] );
+	}
+
+}
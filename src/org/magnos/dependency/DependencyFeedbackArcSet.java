@@ -0,0 +1,310 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.Arrays;
+
+
+/**
+ * Computes a small set of dependencies which, when ignored, leave a graph of
+ * {@link DependencyNode}s free of cycles (a feedback arc set). This uses the
+ * linear time heuristic of Eades, Lin and Smyth: nodes are repeatedly removed
+ * from the graph, sinks are placed at the end of a sequence, sources at the
+ * start, and otherwise the node with the greatest difference between its
+ * outgoing and incoming edges is placed at the start. Every dependency which
+ * points backwards in the resulting sequence is in the feedback arc set.<br/>
+ * <br/>
+ * The i'th broken dependency states that {@link #getDependents()}[i] depends
+ * on {@link #getDependencies()}[i]. Dependencies on nodes outside of the
+ * analysis are ignored.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyFeedbackArcSet<T>
+{
+
+	private DependencyNode<T>[] dependents;
+	private DependencyNode<T>[] dependencies;
+	private int size = 0;
+
+	/**
+	 * Computes the feedback arc set of the nodes in the last analysis of the
+	 * given analyzer, the ordered nodes and the nodes left in a cycle.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which analyzed the graph.
+	 * @return The number of dependencies in the feedback arc set.
+	 */
+	public int compute( DependencyAnalyzer<T> analyzer )
+	{
+		final int orderedSize = analyzer.getOrderedSize();
+		final int N = orderedSize + analyzer.getCycleSize();
+		final DependencyNode<T>[] nodes = new DependencyNode[N];
+
+		// The analyzer indexes the nodes left in a cycle after the ordered
+		// nodes.
+		System.arraycopy( analyzer.getOrderedNodes(), 0, nodes, 0, orderedSize );
+		System.arraycopy( analyzer.getCycle(), 0, nodes, orderedSize, N - orderedSize );
+
+		// Build the edges from each dependency to its dependents (out) and from
+		// each dependent to its dependencies (in), ignoring self dependencies.
+		int[] outStart = new int[N + 1];
+		int[] inStart = new int[N + 1];
+		int selfCount = 0;
+
+		for (int i = 0; i < N; i++)
+		{
+			for (DependencyNode<T> dependency : nodes[i].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j == i)
+				{
+					selfCount++;
+				}
+				else if (j != -1)
+				{
+					outStart[j + 1]++;
+					inStart[i + 1]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < N; i++)
+		{
+			outStart[i + 1] += outStart[i];
+			inStart[i + 1] += inStart[i];
+		}
+
+		final int E = outStart[N];
+		int[] outEdges = new int[E];
+		int[] inEdges = new int[E];
+		int[] outRemaining = new int[N];
+		int[] inRemaining = new int[N];
+
+		for (int i = 0; i < N; i++)
+		{
+			for (DependencyNode<T> dependency : nodes[i].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != i && j != -1)
+				{
+					outEdges[outStart[j] + outRemaining[j]++] = i;
+					inEdges[inStart[i] + inRemaining[i]++] = j;
+				}
+			}
+		}
+
+		// Buckets of nodes by (out - in), entries are pushed whenever the
+		// difference changes and are lazily skipped when out of date.
+		int[] bucketHead = new int[2 * N + 1];
+		int[] entryNode = new int[N + E];
+		int[] entryNext = new int[N + E];
+		int entryCount = 0;
+		int maximumBucket = 0;
+
+		int[] sinks = new int[N];
+		int sinkCount = 0;
+		int[] sources = new int[N];
+		int sourceCount = 0;
+
+		Arrays.fill( bucketHead, -1 );
+
+		for (int i = 0; i < N; i++)
+		{
+			int bucket = outRemaining[i] - inRemaining[i] + N;
+
+			entryNode[entryCount] = i;
+			entryNext[entryCount] = bucketHead[bucket];
+			bucketHead[bucket] = entryCount++;
+			maximumBucket = Math.max( maximumBucket, bucket );
+
+			if (outRemaining[i] == 0)
+			{
+				sinks[sinkCount++] = i;
+			}
+			else if (inRemaining[i] == 0)
+			{
+				sources[sourceCount++] = i;
+			}
+		}
+
+		// The sequence is built from both ends, position holds the final index
+		// of each node in the sequence.
+		boolean[] removed = new boolean[N];
+		int[] position = new int[N];
+		int head = 0;
+		int tail = N;
+		int remaining = N;
+
+		while (remaining > 0)
+		{
+			int u = -1;
+
+			while (u == -1 && sinkCount > 0)
+			{
+				int candidate = sinks[--sinkCount];
+
+				if (!removed[candidate])
+				{
+					u = candidate;
+					position[u] = --tail;
+				}
+			}
+
+			while (u == -1 && sourceCount > 0)
+			{
+				int candidate = sources[--sourceCount];
+
+				if (!removed[candidate])
+				{
+					u = candidate;
+					position[u] = head++;
+				}
+			}
+
+			while (u == -1)
+			{
+				int entry = bucketHead[maximumBucket];
+
+				if (entry == -1)
+				{
+					maximumBucket--;
+					continue;
+				}
+
+				bucketHead[maximumBucket] = entryNext[entry];
+
+				int candidate = entryNode[entry];
+
+				if (!removed[candidate] && outRemaining[candidate] - inRemaining[candidate] + N == maximumBucket)
+				{
+					u = candidate;
+					position[u] = head++;
+				}
+			}
+
+			removed[u] = true;
+			remaining--;
+
+			for (int k = outStart[u]; k < outStart[u + 1]; k++)
+			{
+				int v = outEdges[k];
+
+				if (!removed[v])
+				{
+					int bucket = outRemaining[v] - ( --inRemaining[v] ) + N;
+
+					entryNode[entryCount] = v;
+					entryNext[entryCount] = bucketHead[bucket];
+					bucketHead[bucket] = entryCount++;
+					maximumBucket = Math.max( maximumBucket, bucket );
+
+					if (inRemaining[v] == 0 && outRemaining[v] > 0)
+					{
+						sources[sourceCount++] = v;
+					}
+				}
+			}
+
+			for (int k = inStart[u]; k < inStart[u + 1]; k++)
+			{
+				int w = inEdges[k];
+
+				if (!removed[w])
+				{
+					int bucket = ( --outRemaining[w] ) - inRemaining[w] + N;
+
+					entryNode[entryCount] = w;
+					entryNext[entryCount] = bucketHead[bucket];
+					bucketHead[bucket] = entryCount++;
+
+					if (outRemaining[w] == 0)
+					{
+						sinks[sinkCount++] = w;
+					}
+				}
+			}
+		}
+
+		// Every dependency placed after its dependent in the sequence is broken.
+		int brokenCount = selfCount;
+
+		for (int i = 0; i < N; i++)
+		{
+			for (int k = inStart[i]; k < inStart[i + 1]; k++)
+			{
+				if (position[inEdges[k]] > position[i])
+				{
+					brokenCount++;
+				}
+			}
+		}
+
+		dependents = new DependencyNode[brokenCount];
+		dependencies = new DependencyNode[brokenCount];
+		size = 0;
+
+		for (int i = 0; i < N; i++)
+		{
+			for (DependencyNode<T> dependency : nodes[i].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j == i || ( j != -1 && position[j] > position[i] ))
+				{
+					dependents[size] = nodes[i];
+					dependencies[size] = dependency;
+					size++;
+				}
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return The array of nodes whose dependency is broken, where
+	 *         {@link #getSize()} is the number of broken dependencies.
+	 */
+	public DependencyNode<T>[] getDependents()
+	{
+		return dependents;
+	}
+
+	/**
+	 * @return The array of broken dependencies, where {@link #getSize()} is
+	 *         the number of broken dependencies.
+	 */
+	public DependencyNode<T>[] getDependencies()
+	{
+		return dependencies;
+	}
+
+	/**
+	 * @return The number of dependencies in the feedback arc set.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+}
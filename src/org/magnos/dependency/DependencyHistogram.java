@@ -0,0 +1,175 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.Arrays;
+
+
+/**
+ * A histogram of non-negative durations with a fixed memory footprint. Values
+ * are counted in buckets which grow exponentially in size, each power of two
+ * is divided into 64 buckets so a recorded value is reported with a relative
+ * error under 2%. Recording and reading is thread-safe.
+ * 
+ * @author Philip Diffenderfer
+ */
+public class DependencyHistogram
+{
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKET_COUNT;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count = 0;
+	private long total = 0;
+	private long minimum = Long.MAX_VALUE;
+	private long maximum = 0;
+
+	/**
+	 * Records a value, negative values are recorded as zero.
+	 * 
+	 * @param value
+	 *        The value to record.
+	 */
+	public synchronized void record( long value )
+	{
+		value = Math.max( 0, value );
+
+		counts[indexOf( value )]++;
+		count++;
+		total += value;
+		minimum = Math.min( minimum, value );
+		maximum = Math.max( maximum, value );
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public synchronized void reset()
+	{
+		Arrays.fill( counts, 0 );
+		count = 0;
+		total = 0;
+		minimum = Long.MAX_VALUE;
+		maximum = 0;
+	}
+
+	/**
+	 * Returns the value which the given percentage of recorded values are less
+	 * than or equal to.
+	 * 
+	 * @param percentile
+	 *        The percentile between 0 and 100.
+	 * @return The highest value equivalent to the percentile, or zero if no
+	 *         values were recorded.
+	 */
+	public synchronized long getPercentile( double percentile )
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+
+		long target = Math.max( 1, (long)Math.ceil( count * Math.min( 100.0, percentile ) / 100.0 ) );
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			seen += counts[i];
+
+			if (seen >= target)
+			{
+				return Math.min( maximum, highestEquivalent( i ) );
+			}
+		}
+
+		return maximum;
+	}
+
+	/**
+	 * @return The number of recorded values.
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return The smallest recorded value, or zero if no values were recorded.
+	 */
+	public synchronized long getMinimum()
+	{
+		return ( count == 0 ? 0 : minimum );
+	}
+
+	/**
+	 * @return The largest recorded value.
+	 */
+	public synchronized long getMaximum()
+	{
+		return maximum;
+	}
+
+	/**
+	 * @return The mean of the recorded values.
+	 */
+	public synchronized double getMean()
+	{
+		return ( count == 0 ? 0 : (double)total / count );
+	}
+
+	/**
+	 * @return The sum of the recorded values.
+	 */
+	public synchronized long getTotal()
+	{
+		return total;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "count=" + getCount() + " min=" + getMinimum() + " p50=" + getPercentile( 50 ) + " p90=" + getPercentile( 90 ) + " p99=" + getPercentile( 99 ) + " p99.9=" + getPercentile( 99.9 ) + " max=" + getMaximum();
+	}
+
+	private static int indexOf( long value )
+	{
+		if (value < SUB_BUCKET_COUNT * 2)
+		{
+			return (int)value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+
+		return ( shift + 1 ) * SUB_BUCKET_COUNT + (int)( value >>> shift ) - SUB_BUCKET_COUNT;
+	}
+
+	private static long highestEquivalent( int index )
+	{
+		if (index < SUB_BUCKET_COUNT * 2)
+		{
+			return index;
+		}
+
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long)( index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT ) << shift;
+
+		return lowest + ( 1L << shift ) - 1;
+	}
+
+}
@@ -0,0 +1,848 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Imports a graph of {@link DependencyNode}s from an edge list file. The file
+ * is memory-mapped and split into chunks which are parsed in parallel, each
+ * chunk collects its distinct keys and edges without creating an object per
+ * token. The keys of all chunks are then given global ids, and the nodes and
+ * their dependencies are built in parallel by ranges of global ids.<br/>
+ * <br/>
+ * A text edge list has a line per node: the key of the node followed by the
+ * keys it depends on, separated by spaces, tabs or commas. Lines may be empty
+ * and a <code>#</code> at the start of a key begins a comment which lasts to
+ * the end of the line. The value of each node is its key.<br/>
+ * <br/>
+ * A binary edge list is a sequence of pairs of big-endian 32-bit integers,
+ * where the first integer depends on the second. The value of each node is
+ * its integer. A file which ends with a partial pair is rejected.
+ * 
+ * @author Philip Diffenderfer
+ */
+public class DependencyImporter
+{
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+	private static final long MINIMUM_CHUNK = 1 << 20;
+	private static final long MAXIMUM_CHUNK = 1 << 30;
+
+	private final Executor executor;
+	private final int parallelism;
+
+	/**
+	 * Instantiates a new DependencyImporter which parses in the calling thread.
+	 */
+	public DependencyImporter()
+	{
+		this( null, 1 );
+	}
+
+	/**
+	 * Instantiates a new DependencyImporter.
+	 * 
+	 * @param executor
+	 *        The executor which parses the chunks of a file.
+	 * @param parallelism
+	 *        The number of chunks to split a file into.
+	 */
+	public DependencyImporter( Executor executor, int parallelism )
+	{
+		this.executor = executor;
+		this.parallelism = Math.max( 1, parallelism );
+	}
+
+	/**
+	 * Imports a text edge list.
+	 * 
+	 * @param file
+	 *        The file to import.
+	 * @return A new collection of nodes in the order their keys first appear.
+	 * @throws IOException
+	 *         The file could not be read.
+	 */
+	public Collection<DependencyNode<String>> importText( File file ) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile( file, "r" );
+
+		try
+		{
+			FileChannel channel = input.getChannel();
+			long[] bounds = split( channel.size(), 1 );
+			TextChunk[] chunks = new TextChunk[bounds.length - 1];
+
+			for (int i = 0; i < chunks.length; i++)
+			{
+				chunks[i] = new TextChunk( channel, bounds[i], bounds[i + 1] );
+			}
+
+			return build( chunks );
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Imports a binary edge list.
+	 * 
+	 * @param file
+	 *        The file to import.
+	 * @return A new collection of nodes in the order their integers first
+	 *         appear.
+	 * @throws IOException
+	 *         The file could not be read, or its size isn't a whole number of
+	 *         pairs.
+	 */
+	public Collection<DependencyNode<Integer>> importBinary( File file ) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile( file, "r" );
+
+		try
+		{
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+
+			if (size % 8 != 0)
+			{
+				throw new IOException( "Binary edge list " + file + " ends with a partial pair of " + ( size % 8 ) + " bytes" );
+			}
+
+			long[] bounds = split( size, 8 );
+			BinaryChunk[] chunks = new BinaryChunk[bounds.length - 1];
+
+			for (int i = 0; i < chunks.length; i++)
+			{
+				chunks[i] = new BinaryChunk( channel, bounds[i], bounds[i + 1] );
+			}
+
+			return build( chunks );
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Parses the chunks and merges them into nodes. The keys of the chunks are
+	 * interned into partitions by their hash in parallel, a single pass over
+	 * the chunks then numbers the distinct keys in the order they first
+	 * appear, and finally the nodes and their dependencies are built in
+	 * parallel by ranges of those numbers so each node is only modified by one
+	 * thread.
+	 */
+	private <T> List<DependencyNode<T>> build( Chunk<T>[] chunks ) throws IOException
+	{
+		final int P = ( executor == null ? 1 : parallelism );
+
+		run( chunks );
+
+		Partition<T>[] partitions = new Partition[P];
+
+		for (Chunk<T> chunk : chunks)
+		{
+			chunk.globals = new int[chunk.symbols.size];
+		}
+
+		for (int p = 0; p < P; p++)
+		{
+			partitions[p] = new Partition<T>( chunks, p, P );
+		}
+
+		run( partitions );
+
+		int count = 0;
+
+		for (Partition<T> partition : partitions)
+		{
+			count += partition.size;
+		}
+
+		// A key first appears at its first local id in the first chunk it's
+		// in, which is visited before any of its other appearances.
+		final Chunk<T>[] firstChunk = new Chunk[count];
+		final int[] firstLocal = new int[count];
+		int next = 0;
+
+		for (Chunk<T> chunk : chunks)
+		{
+			for (int i = 0; i < chunk.symbols.size; i++)
+			{
+				Partition<T> partition = partitions[getPartition( chunk.symbols.hashes[i], P )];
+				int id = chunk.globals[i];
+
+				if (partition.firstChunk[id] == chunk && partition.firstLocal[id] == i)
+				{
+					partition.globals[id] = next;
+					firstChunk[next] = chunk;
+					firstLocal[next] = i;
+					next++;
+				}
+
+				chunk.globals[i] = partition.globals[id];
+			}
+		}
+
+		final DependencyNode<T>[] nodes = new DependencyNode[count];
+		final Creator<T>[] creators = new Creator[P];
+		final Linker<T>[] linkers = new Linker[P];
+
+		for (int p = 0; p < P; p++)
+		{
+			int from = (int)( (long)count * p / P );
+			int to = (int)( (long)count * ( p + 1 ) / P );
+
+			creators[p] = new Creator<T>( nodes, firstChunk, firstLocal, from, to );
+			linkers[p] = new Linker<T>( nodes, chunks, from, to );
+		}
+
+		run( creators );
+		run( linkers );
+
+		return new ArrayList<DependencyNode<T>>( Arrays.asList( nodes ) );
+	}
+
+	/**
+	 * Splits a file into chunks, every boundary is a multiple of the given
+	 * alignment.
+	 * 
+	 * @return The boundaries of the chunks, chunk i is from bounds[i] to
+	 *         bounds[i + 1].
+	 */
+	private long[] split( long size, long alignment )
+	{
+		long chunkCount = Math.max( parallelism, ( size + MAXIMUM_CHUNK - 1 ) / MAXIMUM_CHUNK );
+
+		chunkCount = Math.max( 1, Math.min( chunkCount, ( size + MINIMUM_CHUNK - 1 ) / MINIMUM_CHUNK ) );
+
+		long[] bounds = new long[(int)chunkCount + 1];
+
+		for (int i = 1; i < chunkCount; i++)
+		{
+			bounds[i] = size * i / chunkCount / alignment * alignment;
+		}
+
+		bounds[(int)chunkCount] = size;
+
+		return bounds;
+	}
+
+	/**
+	 * Runs each task, in parallel if there is an executor, and rethrows the
+	 * first failure.
+	 */
+	private void run( Task[] tasks ) throws IOException
+	{
+		if (executor == null || tasks.length == 1)
+		{
+			for (Task task : tasks)
+			{
+				task.run();
+			}
+		}
+		else
+		{
+			final CountDownLatch latch = new CountDownLatch( tasks.length );
+
+			for (final Task task : tasks)
+			{
+				executor.execute( new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							task.run();
+						}
+						finally
+						{
+							latch.countDown();
+						}
+					}
+				} );
+			}
+
+			try
+			{
+				latch.await();
+			}
+			catch (InterruptedException e)
+			{
+				throw new InterruptedIOException( "Interrupted while importing" );
+			}
+		}
+
+		for (Task task : tasks)
+		{
+			if (task.error instanceof IOException)
+			{
+				throw (IOException)task.error;
+			}
+
+			if (task.error instanceof RuntimeException)
+			{
+				throw (RuntimeException)task.error;
+			}
+
+			if (task.error != null)
+			{
+				throw new IOException( task.error.toString() );
+			}
+		}
+	}
+
+	/**
+	 * Returns the partition of a key's hash, which uses the high bits of the
+	 * mixed hash since the low bits pick its slot in a table.
+	 */
+	private static int getPartition( int hash, int partitionCount )
+	{
+		return (int)( ( ( SymbolTable.mix( hash ) >>> 16 ) * (long)partitionCount ) >>> 16 );
+	}
+
+	/**
+	 * A unit of work which keeps its failure instead of throwing it.
+	 */
+	private static abstract class Task implements Runnable
+	{
+
+		protected Throwable error;
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				execute();
+			}
+			catch (Throwable e)
+			{
+				error = e;
+			}
+		}
+
+		protected abstract void execute() throws IOException;
+	}
+
+	/**
+	 * A region of a file parsed into local symbols and edges between them.
+	 */
+	private static abstract class Chunk<T> extends Task
+	{
+
+		protected final FileChannel channel;
+		protected final long start;
+		protected final long end;
+
+		protected final SymbolTable symbols = new SymbolTable();
+		protected int[] edges = new int[64];
+		protected int edgeCount = 0;
+		protected int[] globals;
+
+		public Chunk( FileChannel channel, long start, long end )
+		{
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void addEdge( int dependent, int dependency )
+		{
+			if (edgeCount * 2 == edges.length)
+			{
+				edges = Arrays.copyOf( edges, edges.length * 2 );
+			}
+
+			edges[edgeCount * 2] = dependent;
+			edges[edgeCount * 2 + 1] = dependency;
+			edgeCount++;
+		}
+
+		/**
+		 * @return True if the local key of this chunk is the same as the local
+		 *         key of the other chunk.
+		 */
+		protected abstract boolean equals( int id, Chunk<T> other, int otherId );
+
+		/**
+		 * @return A new value for the local key.
+		 */
+		protected abstract T getValue( int id );
+	}
+
+	/**
+	 * Interns the keys of every chunk whose hash falls in this partition, the
+	 * local ids of those keys are replaced with their id in the partition.
+	 */
+	private static class Partition<T> extends Task
+	{
+
+		private final Chunk<T>[] chunks;
+		private final int index;
+		private final int count;
+
+		private int[] table = new int[1024];
+		private int[] hashes = new int[512];
+		private Chunk<T>[] firstChunk = new Chunk[512];
+		private int[] firstLocal = new int[512];
+		private int[] globals;
+		private int size = 0;
+
+		public Partition( Chunk<T>[] chunks, int index, int count )
+		{
+			this.chunks = chunks;
+			this.index = index;
+			this.count = count;
+		}
+
+		@Override
+		protected void execute()
+		{
+			for (Chunk<T> chunk : chunks)
+			{
+				final int[] chunkHashes = chunk.symbols.hashes;
+
+				for (int i = 0; i < chunk.symbols.size; i++)
+				{
+					if (getPartition( chunkHashes[i], count ) == index)
+					{
+						chunk.globals[i] = intern( chunk, i, chunkHashes[i] );
+					}
+				}
+			}
+
+			globals = new int[size];
+		}
+
+		private int intern( Chunk<T> chunk, int local, int hash )
+		{
+			int mask = table.length - 1;
+			int slot = SymbolTable.mix( hash ) & mask;
+
+			for (int entry = table[slot]; entry != 0; entry = table[slot])
+			{
+				int id = entry - 1;
+
+				if (hashes[id] == hash && firstChunk[id].equals( firstLocal[id], chunk, local ))
+				{
+					return id;
+				}
+
+				slot = ( slot + 1 ) & mask;
+			}
+
+			int id = size++;
+
+			if (id == hashes.length)
+			{
+				hashes = Arrays.copyOf( hashes, id * 2 );
+				firstChunk = Arrays.copyOf( firstChunk, id * 2 );
+				firstLocal = Arrays.copyOf( firstLocal, id * 2 );
+			}
+
+			hashes[id] = hash;
+			firstChunk[id] = chunk;
+			firstLocal[id] = local;
+			table[slot] = id + 1;
+
+			if (size * 2 > table.length)
+			{
+				table = SymbolTable.rehash( hashes, size, table.length * 2 );
+			}
+
+			return id;
+		}
+	}
+
+	/**
+	 * Creates the nodes in a range of global ids.
+	 */
+	private static class Creator<T> extends Task
+	{
+
+		private final DependencyNode<T>[] nodes;
+		private final Chunk<T>[] firstChunk;
+		private final int[] firstLocal;
+		private final int from;
+		private final int to;
+
+		public Creator( DependencyNode<T>[] nodes, Chunk<T>[] firstChunk, int[] firstLocal, int from, int to )
+		{
+			this.nodes = nodes;
+			this.firstChunk = firstChunk;
+			this.firstLocal = firstLocal;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void execute()
+		{
+			for (int i = from; i < to; i++)
+			{
+				nodes[i] = new DependencyNode<T>( firstChunk[i].getValue( firstLocal[i] ) );
+			}
+		}
+	}
+
+	/**
+	 * Adds the dependencies of the nodes in a range of global ids, every
+	 * chunk's edges are scanned but only the edges whose dependent is in the
+	 * range are added.
+	 */
+	private static class Linker<T> extends Task
+	{
+
+		private final DependencyNode<T>[] nodes;
+		private final Chunk<T>[] chunks;
+		private final int from;
+		private final int to;
+
+		public Linker( DependencyNode<T>[] nodes, Chunk<T>[] chunks, int from, int to )
+		{
+			this.nodes = nodes;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void execute()
+		{
+			for (Chunk<T> chunk : chunks)
+			{
+				final int[] edges = chunk.edges;
+				final int[] globals = chunk.globals;
+
+				for (int i = 0; i < chunk.edgeCount; i++)
+				{
+					int dependent = globals[edges[i * 2]];
+
+					if (dependent >= from && dependent < to)
+					{
+						nodes[dependent].addDependency( nodes[globals[edges[i * 2 + 1]]] );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A chunk of a text edge list, every line which starts in the chunk is
+	 * parsed even if it ends after the chunk.
+	 */
+	private static class TextChunk extends Chunk<String>
+	{
+
+		private MappedByteBuffer buffer;
+
+		public TextChunk( FileChannel channel, long start, long end )
+		{
+			super( channel, start, end );
+		}
+
+		@Override
+		protected void execute() throws IOException
+		{
+			final long size = channel.size();
+			final long windowStart = Math.max( 0, start - 1 );
+			final long windowEnd = Math.min( size, windowStart + Integer.MAX_VALUE );
+			final MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart );
+			final int limit = (int)( end - windowStart );
+			final int bufferEnd = buffer.limit();
+			int p = (int)( start - windowStart );
+
+			// A line which started in the previous chunk belongs to it.
+			if (start > 0 && buffer.get( p - 1 ) != '\n')
+			{
+				while (p < bufferEnd && buffer.get( p ) != '\n')
+				{
+					p++;
+				}
+
+				p++;
+			}
+
+			while (p < limit)
+			{
+				int first = -1;
+
+				while (p < bufferEnd)
+				{
+					byte b = buffer.get( p );
+
+					if (b == '\n')
+					{
+						p++;
+						break;
+					}
+
+					if (isSeparator( b ))
+					{
+						p++;
+					}
+					else if (b == '#')
+					{
+						while (p < bufferEnd && buffer.get( p ) != '\n')
+						{
+							p++;
+						}
+					}
+					else
+					{
+						int tokenStart = p;
+						int hash = 0;
+
+						while (p < bufferEnd && ( b = buffer.get( p ) ) != '\n' && !isSeparator( b ))
+						{
+							hash = hash * 31 + b;
+							p++;
+						}
+
+						int id = symbols.intern( buffer, tokenStart, p - tokenStart, hash );
+
+						if (first == -1)
+						{
+							first = id;
+						}
+						else
+						{
+							addEdge( first, id );
+						}
+					}
+				}
+			}
+
+			this.buffer = buffer;
+		}
+
+		@Override
+		protected boolean equals( int id, Chunk<String> other, int otherId )
+		{
+			final MappedByteBuffer otherBuffer = ( (TextChunk)other ).buffer;
+			final int length = symbols.lengths[id];
+			final int offset = symbols.keys[id];
+			final int otherOffset = other.symbols.keys[otherId];
+
+			if (other.symbols.lengths[otherId] != length)
+			{
+				return false;
+			}
+
+			for (int i = 0; i < length; i++)
+			{
+				if (buffer.get( offset + i ) != otherBuffer.get( otherOffset + i ))
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		protected String getValue( int id )
+		{
+			final byte[] bytes = new byte[symbols.lengths[id]];
+			final int offset = symbols.keys[id];
+
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = buffer.get( offset + i );
+			}
+
+			return new String( bytes, UTF8 );
+		}
+
+		private static boolean isSeparator( byte b )
+		{
+			return b == ' ' || b == '\t' || b == '\r' || b == ',';
+		}
+	}
+
+	/**
+	 * A chunk of a binary edge list.
+	 */
+	private static class BinaryChunk extends Chunk<Integer>
+	{
+
+		public BinaryChunk( FileChannel channel, long start, long end )
+		{
+			super( channel, start, end );
+		}
+
+		@Override
+		protected void execute() throws IOException
+		{
+			final MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+			final int limit = buffer.limit();
+
+			for (int p = 0; p + 8 <= limit; p += 8)
+			{
+				addEdge( symbols.intern( buffer.getInt( p ) ), symbols.intern( buffer.getInt( p + 4 ) ) );
+			}
+		}
+
+		@Override
+		protected boolean equals( int id, Chunk<Integer> other, int otherId )
+		{
+			return symbols.keys[id] == other.symbols.keys[otherId];
+		}
+
+		@Override
+		protected Integer getValue( int id )
+		{
+			return Integer.valueOf( symbols.keys[id] );
+		}
+	}
+
+	/**
+	 * An open addressing table which assigns each distinct key of a chunk a
+	 * local id. Text keys are a range of the chunk's buffer given by
+	 * keys[id] and lengths[id], binary keys are stored in keys[id].
+	 */
+	private static class SymbolTable
+	{
+
+		private int[] table = new int[1024];
+		private int[] keys = new int[512];
+		private int[] lengths = new int[512];
+		private int[] hashes = new int[512];
+		private int size = 0;
+
+		public int intern( ByteBuffer buffer, int offset, int length, int hash )
+		{
+			int mask = table.length - 1;
+			int slot = mix( hash ) & mask;
+
+			for (int entry = table[slot]; entry != 0; entry = table[slot])
+			{
+				int id = entry - 1;
+
+				if (hashes[id] == hash && lengths[id] == length && equals( buffer, keys[id], offset, length ))
+				{
+					return id;
+				}
+
+				slot = ( slot + 1 ) & mask;
+			}
+
+			return add( slot, offset, length, hash );
+		}
+
+		public int intern( int key )
+		{
+			int mask = table.length - 1;
+			int slot = mix( key ) & mask;
+
+			for (int entry = table[slot]; entry != 0; entry = table[slot])
+			{
+				if (keys[entry - 1] == key)
+				{
+					return entry - 1;
+				}
+
+				slot = ( slot + 1 ) & mask;
+			}
+
+			return add( slot, key, 0, key );
+		}
+
+		private int add( int slot, int key, int length, int hash )
+		{
+			int id = size++;
+
+			if (id == keys.length)
+			{
+				keys = Arrays.copyOf( keys, id * 2 );
+				lengths = Arrays.copyOf( lengths, id * 2 );
+				hashes = Arrays.copyOf( hashes, id * 2 );
+			}
+
+			keys[id] = key;
+			lengths[id] = length;
+			hashes[id] = hash;
+			table[slot] = id + 1;
+
+			if (size * 2 > table.length)
+			{
+				table = rehash( hashes, size, table.length * 2 );
+			}
+
+			return id;
+		}
+
+		private static int[] rehash( int[] hashes, int size, int capacity )
+		{
+			int[] resized = new int[capacity];
+			int mask = resized.length - 1;
+
+			for (int id = 0; id < size; id++)
+			{
+				int slot = mix( hashes[id] ) & mask;
+
+				while (resized[slot] != 0)
+				{
+					slot = ( slot + 1 ) & mask;
+				}
+
+				resized[slot] = id + 1;
+			}
+
+			return resized;
+		}
+
+		private static boolean equals( ByteBuffer buffer, int a, int b, int length )
+		{
+			for (int i = 0; i < length; i++)
+			{
+				if (buffer.get( a + i ) != buffer.get( b + i ))
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private static int mix( int hash )
+		{
+			hash *= 0x9E3779B1;
+
+			return hash ^ ( hash >>> 16 );
+		}
+	}
+
+}
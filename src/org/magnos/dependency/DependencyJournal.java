@@ -0,0 +1,466 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+
+/**
+ * An append-only file which records the completion of the values of
+ * {@link DependencyNode}s by a stable key, so an execution which crashed can
+ * resume where it left off. When a journal is opened the existing records are
+ * replayed and {@link #getIncomplete(DependencyAnalyzer, Keyer)} returns the
+ * nodes which still need executing: those not completed and every node which
+ * depends on them.<br/>
+ * <br/>
+ * Completions are buffered and written with a single sync (group commit)
+ * once {@link #getBatchSize()} completions are pending or
+ * {@link #getBatchNanos()} has elapsed since the last sync. Only the thread
+ * whose completion ends a batch waits for the sync, other threads keep adding
+ * to the next batch while it's in progress. Completions which were
+ * not synced before a crash are simply executed again, and the records of a
+ * sync which fails are kept and written by the next sync. Each record is
+ * checksummed, a partially written record at the end of the file is discarded
+ * when the journal is opened.
+ * 
+ * @author Philip Diffenderfer
+ */
+public class DependencyJournal
+{
+
+	/**
+	 * Returns the stable key of a value.
+	 * 
+	 * @param <T>
+	 *        The {@link DependencyNode} value type.
+	 */
+	public static interface Keyer<T>
+	{
+
+		/**
+		 * @return The key of the given value, which is the same between
+		 *         executions.
+		 */
+		public String getKey( T value );
+	}
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+	private static final int HEADER_SIZE = 8;
+
+	private final FileChannel channel;
+	private final Set<String> completed = new HashSet<String>();
+	private final Object syncLock = new Object();
+
+	private ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+	private ByteBuffer spare = ByteBuffer.allocate( 64 * 1024 );
+	private int pending = 0;
+	private long lastSync = System.nanoTime();
+	private int batchSize = 1024;
+	private long batchNanos = 10000000L;
+
+	/**
+	 * Opens the journal at the given file, creating it if it doesn't exist and
+	 * replaying the completions it contains.
+	 * 
+	 * @param path
+	 *        The file of the journal.
+	 * @throws IOException
+	 *         The file could not be opened or read.
+	 */
+	public DependencyJournal( File path ) throws IOException
+	{
+		this( new RandomAccessFile( path, "rw" ).getChannel() );
+	}
+
+	/**
+	 * Opens the journal in the given channel and replays the completions it
+	 * contains, the journal closes the channel when it's closed.
+	 * 
+	 * @param channel
+	 *        The channel of the journal's file.
+	 * @throws IOException
+	 *         The channel could not be read.
+	 */
+	DependencyJournal( FileChannel channel ) throws IOException
+	{
+		this.channel = channel;
+
+		replay();
+	}
+
+	/**
+	 * Reads every valid record in the file and truncates any partial record
+	 * at its end.
+	 */
+	private void replay() throws IOException
+	{
+		final long size = channel.size();
+		final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+		final CRC32 crc = new CRC32();
+		long position = 0;
+
+		while (position + HEADER_SIZE <= size)
+		{
+			header.clear();
+			readFully( header, position );
+
+			int length = header.getInt( 0 );
+			int checksum = header.getInt( 4 );
+
+			if (length < 0 || position + HEADER_SIZE + length > size)
+			{
+				break;
+			}
+
+			ByteBuffer data = ByteBuffer.allocate( length );
+			readFully( data, position + HEADER_SIZE );
+
+			crc.reset();
+			crc.update( data.array(), 0, length );
+
+			if ((int)crc.getValue() != checksum)
+			{
+				break;
+			}
+
+			completed.add( new String( data.array(), 0, length, UTF8 ) );
+			position += HEADER_SIZE + length;
+		}
+
+		if (position < size)
+		{
+			channel.truncate( position );
+		}
+
+		channel.position( position );
+	}
+
+	private void readFully( ByteBuffer out, long position ) throws IOException
+	{
+		while (out.hasRemaining())
+		{
+			if (channel.read( out, position + out.position() ) == -1)
+			{
+				throw new IOException( "Unexpected end of journal" );
+			}
+		}
+	}
+
+	/**
+	 * Records the completion of the value with the given key. The record is
+	 * synced with other pending records once the batch is full or old enough.
+	 * 
+	 * @param key
+	 *        The key of the value which completed.
+	 * @throws IOException
+	 *         The batch could not be written.
+	 */
+	public void complete( String key ) throws IOException
+	{
+		final byte[] bytes = key.getBytes( UTF8 );
+		final CRC32 crc = new CRC32();
+		boolean flush;
+
+		crc.update( bytes );
+
+		synchronized (this)
+		{
+			if (!completed.add( key ))
+			{
+				return;
+			}
+
+			if (buffer.remaining() < HEADER_SIZE + bytes.length)
+			{
+				ByteBuffer larger = ByteBuffer.allocate( Math.max( buffer.capacity() * 2, buffer.position() + HEADER_SIZE + bytes.length ) );
+				buffer.flip();
+				larger.put( buffer );
+				buffer = larger;
+			}
+
+			buffer.putInt( bytes.length );
+			buffer.putInt( (int)crc.getValue() );
+			buffer.put( bytes );
+			pending++;
+
+			flush = ( pending >= batchSize || System.nanoTime() - lastSync >= batchNanos );
+		}
+
+		if (flush)
+		{
+			sync();
+		}
+	}
+
+	/**
+	 * Writes and syncs all pending records to the file.
+	 * 
+	 * @throws IOException
+	 *         The records could not be written.
+	 */
+	public void sync() throws IOException
+	{
+		synchronized (syncLock)
+		{
+			ByteBuffer out;
+			int count;
+
+			synchronized (this)
+			{
+				lastSync = System.nanoTime();
+
+				if (buffer.position() == 0)
+				{
+					return;
+				}
+
+				out = buffer;
+				count = pending;
+				buffer = spare;
+				buffer.clear();
+				spare = out;
+				pending = 0;
+			}
+
+			out.flip();
+
+			long position = -1;
+			boolean synced = false;
+
+			try
+			{
+				position = channel.position();
+
+				while (out.hasRemaining())
+				{
+					channel.write( out );
+				}
+
+				channel.force( false );
+
+				synced = true;
+			}
+			finally
+			{
+				if (!synced)
+				{
+					restore( out, count, position );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts the records of a failed sync back in front of the pending records
+	 * so the next sync writes them again from where the failed sync started.
+	 */
+	private void restore( ByteBuffer out, int count, long position )
+	{
+		try
+		{
+			if (position != -1)
+			{
+				channel.position( position );
+			}
+		}
+		catch (IOException e)
+		{
+			// The next sync fails as well if the channel is unusable.
+		}
+
+		synchronized (this)
+		{
+			out.rewind();
+			buffer.flip();
+
+			ByteBuffer restored = ( out.capacity() >= out.limit() + buffer.remaining() ? out : ByteBuffer.allocate( out.limit() + buffer.remaining() ) );
+
+			if (restored == out)
+			{
+				out.position( out.limit() );
+				out.limit( out.capacity() );
+			}
+			else
+			{
+				restored.put( out );
+			}
+
+			restored.put( buffer );
+			buffer.clear();
+
+			spare = buffer;
+			buffer = restored;
+			pending += count;
+		}
+	}
+
+	/**
+	 * Syncs all pending records and closes the file.
+	 * 
+	 * @throws IOException
+	 *         The records could not be written or the file could not be
+	 *         closed.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			sync();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns whether the value with the given key has completed, either as
+	 * replayed from the file or recorded since it was opened. A completion is
+	 * only durable once a sync which includes it succeeds.
+	 * 
+	 * @param key
+	 *        The key of the value.
+	 * @return True if the value completed, otherwise false.
+	 */
+	public synchronized boolean isComplete( String key )
+	{
+		return completed.contains( key );
+	}
+
+	/**
+	 * @return The number of values which have completed.
+	 */
+	public synchronized int getCompletedCount()
+	{
+		return completed.size();
+	}
+
+	/**
+	 * Returns the nodes of the analyzer which need to be executed: every node
+	 * which has not completed and every node which depends on one of them.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which successfully analyzed the graph.
+	 * @param keyer
+	 *        The keyer which returns the key of each value.
+	 * @return A new list of nodes in dependency order.
+	 */
+	public <T> List<DependencyNode<T>> getIncomplete( DependencyAnalyzer<T> analyzer, Keyer<T> keyer )
+	{
+		final DependencyNode<T>[] nodes = analyzer.getOrderedNodes();
+		final int N = analyzer.getOrderedSize();
+		final boolean[] incomplete = new boolean[N];
+		final List<DependencyNode<T>> result = new ArrayList<DependencyNode<T>>();
+
+		for (int i = 0; i < N; i++)
+		{
+			DependencyNode<T> dn = nodes[i];
+
+			incomplete[i] = !isComplete( keyer.getKey( dn.getValue() ) );
+
+			for (DependencyNode<T> dependency : dn.getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1 && incomplete[j])
+				{
+					incomplete[i] = true;
+				}
+			}
+
+			if (incomplete[i])
+			{
+				result.add( dn );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a task which executes the given task and records the completion
+	 * of each value it executes successfully.
+	 * 
+	 * @param task
+	 *        The task to execute.
+	 * @param keyer
+	 *        The keyer which returns the key of each value.
+	 * @return A new task.
+	 */
+	public <T> DependencyTask<T> record( final DependencyTask<T> task, final Keyer<T> keyer )
+	{
+		return new DependencyTask<T>()
+		{
+			public void execute( T value ) throws Exception
+			{
+				task.execute( value );
+				complete( keyer.getKey( value ) );
+			}
+		};
+	}
+
+	/**
+	 * @return The number of pending completions which causes a sync.
+	 */
+	public synchronized int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of pending completions which causes a sync.
+	 * 
+	 * @param batchSize
+	 *        The number of completions.
+	 */
+	public synchronized void setBatchSize( int batchSize )
+	{
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return The time in nanoseconds since the last sync after which a
+	 *         completion causes a sync.
+	 */
+	public synchronized long getBatchNanos()
+	{
+		return batchNanos;
+	}
+
+	/**
+	 * Sets the time in nanoseconds since the last sync after which a
+	 * completion causes a sync.
+	 * 
+	 * @param batchNanos
+	 *        The time in nanoseconds.
+	 */
+	public synchronized void setBatchNanos( long batchNanos )
+	{
+		this.batchNanos = batchNanos;
+	}
+
+}
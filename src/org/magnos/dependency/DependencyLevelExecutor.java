@@ -0,0 +1,329 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Executes the values of an analyzed graph one level at a time, where the
+ * values of a level are executed in parallel in chunks instead of one task per
+ * value. This is meant for graphs with many values that each take very little
+ * time, where submitting every value to an {@link Executor} costs more than
+ * executing it.<br/>
+ * <br/>
+ * For each level a few workers are submitted (the calling thread is one of
+ * them) which repeatedly claim the next chunk of the level until none are
+ * left, so a worker which finishes early takes work which would otherwise wait
+ * for a slower worker. Chunks start large and shrink as the level runs out
+ * (guided scheduling) but are never smaller than the number of values which
+ * take {@link #getTargetChunkNanos()} to execute, based on a moving average of
+ * the measured time per value. A level too small to be worth splitting is
+ * executed by the calling thread alone.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyLevelExecutor<T>
+{
+
+	private final Executor executor;
+	private final int parallelism;
+	private long targetChunkNanos = 50000L;
+	private double nanosPerTask = 0;
+	private Throwable error;
+
+	/**
+	 * Instantiates a new DependencyLevelExecutor.
+	 * 
+	 * @param executor
+	 *        The executor which runs the workers.
+	 * @param parallelism
+	 *        The maximum number of workers executing a level, including the
+	 *        calling thread.
+	 */
+	public DependencyLevelExecutor( Executor executor, int parallelism )
+	{
+		this.executor = executor;
+		this.parallelism = Math.max( 1, parallelism );
+	}
+
+	/**
+	 * Executes the values of the analyzer level by level and waits for them to
+	 * finish. If a task fails no more chunks are started, the chunks already
+	 * executing are waited on, and the failure is given by {@link #getError()}.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which successfully analyzed the graph.
+	 * @param task
+	 *        The task to execute for each value.
+	 * @return True if every value executed, false if the graph had a cycle or a
+	 *         task failed.
+	 * @throws InterruptedException
+	 *         The thread was interrupted while waiting for a level to execute.
+	 *         The chunks already executing are waited on before it's thrown,
+	 *         and the interrupt status of the thread is kept.
+	 */
+	public boolean execute( DependencyAnalyzer<T> analyzer, DependencyTask<T> task ) throws InterruptedException
+	{
+		final T[] ordered = analyzer.getOrdered();
+		final int[] offsets = analyzer.getLevelOffsets();
+		final int levelCount = analyzer.getLevelCount();
+
+		error = null;
+
+		if (!analyzer.isValid())
+		{
+			return false;
+		}
+
+		for (int level = 0; level < levelCount; level++)
+		{
+			Level batch = new Level( ordered, offsets[level], offsets[level + 1], task );
+
+			batch.execute();
+
+			if (batch.failure.get() != null)
+			{
+				error = batch.failure.get();
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The failure of the last execution, or null if it didn't fail.
+	 */
+	public Throwable getError()
+	{
+		return error;
+	}
+
+	/**
+	 * @return The time in nanoseconds a chunk should take to execute.
+	 */
+	public long getTargetChunkNanos()
+	{
+		return targetChunkNanos;
+	}
+
+	/**
+	 * Sets the time in nanoseconds a chunk should take to execute, larger
+	 * chunks cost less to claim but leave less work to balance between
+	 * workers.
+	 * 
+	 * @param targetChunkNanos
+	 *        The time in nanoseconds.
+	 */
+	public void setTargetChunkNanos( long targetChunkNanos )
+	{
+		this.targetChunkNanos = Math.max( 1, targetChunkNanos );
+	}
+
+	/**
+	 * @return The moving average of the time in nanoseconds to execute a
+	 *         value, or zero if nothing has been executed.
+	 */
+	public double getNanosPerTask()
+	{
+		return nanosPerTask;
+	}
+
+	/**
+	 * @return The smallest number of values in a chunk based on the measured
+	 *         time per value.
+	 */
+	private int getMinimumChunk()
+	{
+		return ( nanosPerTask <= 0 ? 1 : (int)Math.max( 1, Math.min( Integer.MAX_VALUE, targetChunkNanos / nanosPerTask ) ) );
+	}
+
+	/**
+	 * Records the measured time of a level in the moving average.
+	 */
+	private void measure( long nanos, int count )
+	{
+		if (count > 0)
+		{
+			double measured = (double)nanos / count;
+
+			nanosPerTask = ( nanosPerTask <= 0 ? measured : nanosPerTask * 0.75 + measured * 0.25 );
+		}
+	}
+
+	/**
+	 * The execution of a single level.
+	 */
+	private class Level implements Runnable
+	{
+
+		private final T[] ordered;
+		private final int end;
+		private final DependencyTask<T> task;
+		private final int minimumChunk;
+		private final int workers;
+
+		private final AtomicInteger cursor;
+		private final AtomicLong nanos = new AtomicLong();
+		private final AtomicInteger executed = new AtomicInteger();
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		private final CountDownLatch done;
+
+		public Level( T[] ordered, int start, int end, DependencyTask<T> task )
+		{
+			final int size = end - start;
+
+			this.ordered = ordered;
+			this.end = end;
+			this.task = task;
+			this.minimumChunk = getMinimumChunk();
+			this.workers = (int)Math.max( 1, Math.min( parallelism, ( (long)size + minimumChunk - 1 ) / minimumChunk ) );
+			this.cursor = new AtomicInteger( start );
+			this.done = new CountDownLatch( workers - 1 );
+		}
+
+		/**
+		 * Submits the other workers, works on the level in the calling thread,
+		 * and waits for the other workers to finish.
+		 */
+		public void execute() throws InterruptedException
+		{
+			for (int i = 1; i < workers; i++)
+			{
+				try
+				{
+					executor.execute( this );
+				}
+				catch (RuntimeException e)
+				{
+					failure.compareAndSet( null, e );
+					done.countDown();
+				}
+			}
+
+			work();
+
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException e)
+			{
+				failure.compareAndSet( null, e );
+				awaitUninterruptibly();
+				Thread.currentThread().interrupt();
+
+				throw e;
+			}
+
+			measure( nanos.get(), executed.get() );
+		}
+
+		/**
+		 * Waits for the other workers to finish their current chunks, which
+		 * they do without claiming more once a failure is set.
+		 */
+		private void awaitUninterruptibly()
+		{
+			for (;;)
+			{
+				try
+				{
+					done.await();
+
+					return;
+				}
+				catch (InterruptedException e)
+				{
+					// the interrupt status is restored by the caller
+				}
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				work();
+			}
+			finally
+			{
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Claims and executes chunks until the level is finished or a task
+		 * failed.
+		 */
+		private void work()
+		{
+			long elapsed = 0;
+			int count = 0;
+
+			while (failure.get() == null)
+			{
+				int from = cursor.get();
+				int remaining = end - from;
+
+				if (remaining <= 0)
+				{
+					break;
+				}
+
+				int chunk = Math.min( remaining, Math.max( minimumChunk, remaining / ( workers * 2 ) ) );
+
+				if (!cursor.compareAndSet( from, from + chunk ))
+				{
+					continue;
+				}
+
+				long start = System.nanoTime();
+
+				try
+				{
+					for (int i = from; i < from + chunk; i++)
+					{
+						task.execute( ordered[i] );
+					}
+				}
+				catch (Throwable e)
+				{
+					failure.compareAndSet( null, e );
+				}
+
+				elapsed += System.nanoTime() - start;
+				count += chunk;
+			}
+
+			nanos.addAndGet( elapsed );
+			executed.addAndGet( count );
+		}
+
+	}
+
+}
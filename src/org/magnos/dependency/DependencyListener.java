@@ -0,0 +1,63 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+/**
+ * Listens to the execution of the values of {@link DependencyNode}s in
+ * dependency order. The times given are from {@link System#nanoTime()}. The
+ * methods may be invoked from different threads, but never concurrently for
+ * the same node.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public interface DependencyListener<T>
+{
+
+	/**
+	 * All dependencies of the given node have finished executing.
+	 * 
+	 * @param node
+	 *        The node which is ready.
+	 * @param nanos
+	 *        The time the node became ready.
+	 */
+	public void ready( DependencyNode<T> node, long nanos );
+
+	/**
+	 * The given node started executing.
+	 * 
+	 * @param node
+	 *        The node which started.
+	 * @param nanos
+	 *        The time the node started.
+	 */
+	public void started( DependencyNode<T> node, long nanos );
+
+	/**
+	 * The given node finished executing, successfully or not.
+	 * 
+	 * @param node
+	 *        The node which finished.
+	 * @param nanos
+	 *        The time the node finished.
+	 */
+	public void finished( DependencyNode<T> node, long nanos );
+
+}
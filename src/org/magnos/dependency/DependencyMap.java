@@ -17,7 +17,7 @@
 package org.magnos.dependency;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -48,8 +48,21 @@ public class DependencyMap<K, V>
      */
     public DependencyMap()
     {
-        this.dependencies = new LinkedHashMap<K, Set<K>>();
-        this.values = new LinkedHashMap<K, V>();
+        this( new LinkedHashMap<K, Set<K>>(), new LinkedHashMap<K, V>() );
+    }
+
+    /**
+     * Instantiates a new DependencyMap backed by the given maps.
+     * 
+     * @param dependencies
+     *      The map of keys to the set of keys they depend on.
+     * @param values
+     *      The map of keys to their values.
+     */
+    protected DependencyMap( Map<K, Set<K>> dependencies, Map<K, V> values )
+    {
+        this.dependencies = dependencies;
+        this.values = values;
     }
 
     /**
@@ -105,13 +118,23 @@ public class DependencyMap<K, V>
 
         if (set == null)
         {
-            set = new HashSet<K>();
+            set = newDependencySet();
             dependencies.put( parent, set );
         }
 
         return set;
     }
 
+    /**
+     * Creates the set which holds the dependencies of a single key.
+     * 
+     * @return A new empty set.
+     */
+    protected Set<K> newDependencySet()
+    {
+        return new HashSet<K>();
+    }
+
     /**
      * Sets the value of the given key.
      * 
@@ -125,6 +148,36 @@ public class DependencyMap<K, V>
         values.put( key, value );
     }
 
+    /**
+     * Returns the value of the given key.
+     * 
+     * @param key
+     *      The key.
+     * @return The value attached to the key, or null if it has none.
+     */
+    public V get( K key )
+    {
+        return values.get( key );
+    }
+
+    /**
+     * @return A read-only view of the values in the map by key.
+     */
+    public Map<K, V> getValueMap()
+    {
+        return Collections.unmodifiableMap( values );
+    }
+
+    /**
+     * @return A read-only view of the dependencies in the map by key, this
+     *         doesn't create empty sets for keys without dependencies like
+     *         {@link #getDependencies(Object)}.
+     */
+    public Map<K, Set<K>> getDependencyMap()
+    {
+        return Collections.unmodifiableMap( dependencies );
+    }
+
     /**
      * Converts the values and dependencies in the map into a {@link Collection}
      * of {@link DependencyNode}s.
@@ -133,7 +186,19 @@ public class DependencyMap<K, V>
      */
     public Collection<DependencyNode<V>> toNodes()
     {
-        Map<K, DependencyNode<V>> nodeMap = new HashMap<K, DependencyNode<V>>();
+        return toNodeMap().values();
+    }
+
+    /**
+     * Converts the values and dependencies in the map into a {@link Map} of
+     * keys to {@link DependencyNode}s, in the order the values were added.
+     * Dependencies on keys without a value are ignored.
+     * 
+     * @return The reference to the map of {@link DependencyNode}s.
+     */
+    public Map<K, DependencyNode<V>> toNodeMap()
+    {
+        Map<K, DependencyNode<V>> nodeMap = new LinkedHashMap<K, DependencyNode<V>>();
 
         for (Entry<K, V> e : values.entrySet())
         {
@@ -150,12 +215,17 @@ public class DependencyMap<K, V>
             {
                 for (K d : deps)
                 {
-                    dn.addDependency( nodeMap.get( d ) );
+                    DependencyNode<V> dependency = nodeMap.get( d );
+
+                    if (dependency != null)
+                    {
+                        dn.addDependency( dependency );
+                    }
                 }
             }
         }
 
-        return nodeMap.values();
+        return nodeMap;
     }
     
     /**
@@ -42,6 +42,8 @@ public class DependencyNode<T> implements Serializable
 
 	private int index;
 
+	private transient long generation;
+
 	private final Set<DependencyNode<T>> dependencies = new HashSet<DependencyNode<T>>();
 
 	/**
@@ -190,6 +192,28 @@ public class DependencyNode<T> implements Serializable
 		this.index = index;
 	}
 
+	/**
+	 * The generation of the analysis which is placing this node, a node which
+	 * has the generation of the current analysis has not been placed yet.
+	 * 
+	 * @return The generation stamp of this node.
+	 */
+	protected long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * Sets the generation of this node.
+	 * 
+	 * @param generation
+	 *        The generation stamp of this node.
+	 */
+	protected void setGeneration( long generation )
+	{
+		this.generation = generation;
+	}
+
 	/**
 	 * The set of dependencies.
 	 * 
@@ -0,0 +1,453 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * Answers why one node depends on another by finding the shortest chains of
+ * dependencies between them in an analyzed graph. The dependencies and
+ * dependents of the ordered nodes are copied into arrays when the query is
+ * created, so a query doesn't touch the node's sets and reflects the graph as
+ * it was analyzed.<br/>
+ * <br/>
+ * The shortest chain is found with a breadth-first search from both ends
+ * which always expands the smaller frontier. Since a dependency always has a
+ * smaller index and depth than its dependent, any node whose index or depth
+ * places it outside of the two ends can't be on a chain and is never visited.
+ * The k shortest chains are found with a best-first search over partial
+ * chains where the remaining distance of each node is known exactly, so each
+ * partial chain taken from the queue leads to a result.<br/>
+ * <br/>
+ * A query reuses its working arrays and is not thread-safe.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyQuery<T>
+{
+
+	private final DependencyAnalyzer<T> analyzer;
+	private final DependencyNode<T>[] nodes;
+	private final int nodeCount;
+	private final int[] depth;
+	private final int[] dependencyStart;
+	private final int[] dependencies;
+	private final int[] dependentStart;
+	private final int[] dependents;
+
+	private final int[] forwardMark;
+	private final int[] forwardParent;
+	private final int[] forwardDistance;
+	private final int[] forwardQueue;
+	private final int[] backwardMark;
+	private final int[] backwardParent;
+	private final int[] backwardDistance;
+	private final int[] backwardQueue;
+	private int stamp = 0;
+
+	/**
+	 * Instantiates a new DependencyQuery over the ordered nodes of an analyzer.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which analyzed the graph.
+	 */
+	public DependencyQuery( DependencyAnalyzer<T> analyzer )
+	{
+		final DependencyNode<T>[] nodes = analyzer.getOrderedNodes();
+		final int N = analyzer.getOrderedSize();
+
+		this.analyzer = analyzer;
+		this.nodes = nodes;
+		this.nodeCount = N;
+		this.depth = new int[N];
+		this.dependencyStart = new int[N + 1];
+		this.dependentStart = new int[N + 1];
+
+		for (int i = 0; i < N; i++)
+		{
+			depth[i] = nodes[i].getDepth();
+
+			for (DependencyNode<T> dependency : nodes[i].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1)
+				{
+					dependencyStart[i + 1]++;
+					dependentStart[j + 1]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < N; i++)
+		{
+			dependencyStart[i + 1] += dependencyStart[i];
+			dependentStart[i + 1] += dependentStart[i];
+		}
+
+		this.dependencies = new int[dependencyStart[N]];
+		this.dependents = new int[dependentStart[N]];
+
+		int[] next = new int[N];
+
+		for (int i = 0; i < N; i++)
+		{
+			int k = dependencyStart[i];
+
+			for (DependencyNode<T> dependency : nodes[i].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1)
+				{
+					dependencies[k++] = j;
+					dependents[dependentStart[j] + next[j]++] = i;
+				}
+			}
+		}
+
+		this.forwardMark = new int[N];
+		this.forwardParent = new int[N];
+		this.forwardDistance = new int[N];
+		this.forwardQueue = new int[N];
+		this.backwardMark = new int[N];
+		this.backwardParent = new int[N];
+		this.backwardDistance = new int[N];
+		this.backwardQueue = new int[N];
+	}
+
+	/**
+	 * Starts a new search, the working arrays are only cleared when the stamp
+	 * wraps around.
+	 */
+	private void nextStamp()
+	{
+		if (++stamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill( forwardMark, 0 );
+			Arrays.fill( backwardMark, 0 );
+			stamp = 1;
+		}
+	}
+
+	/**
+	 * Returns the shortest chain of dependencies from a node to a node it
+	 * depends on, directly or indirectly.
+	 * 
+	 * @param from
+	 *        The dependent node where the chain starts.
+	 * @param to
+	 *        The dependency where the chain ends.
+	 * @return A new list of nodes starting with from and ending with to where
+	 *         each node depends on the next, or an empty list if from doesn't
+	 *         depend on to.
+	 */
+	public List<DependencyNode<T>> getShortestPath( DependencyNode<T> from, DependencyNode<T> to )
+	{
+		final List<DependencyNode<T>> path = new ArrayList<DependencyNode<T>>();
+		final int a = analyzer.indexOf( from );
+		final int z = analyzer.indexOf( to );
+
+		if (a == -1 || z == -1 || a >= nodeCount || a < z)
+		{
+			return path;
+		}
+
+		if (a == z)
+		{
+			path.add( from );
+
+			return path;
+		}
+
+		final int meet = search( a, z );
+
+		if (meet == -1)
+		{
+			return path;
+		}
+
+		for (int i = meet; i != -1; i = forwardParent[i])
+		{
+			path.add( nodes[i] );
+		}
+
+		Collections.reverse( path );
+
+		for (int i = backwardParent[meet]; i != -1; i = backwardParent[i])
+		{
+			path.add( nodes[i] );
+		}
+
+		return path;
+	}
+
+	/**
+	 * Returns whether a node depends on another, directly or indirectly.
+	 * 
+	 * @param from
+	 *        The dependent node.
+	 * @param to
+	 *        The possible dependency.
+	 * @return True if from depends on to.
+	 */
+	public boolean dependsOn( DependencyNode<T> from, DependencyNode<T> to )
+	{
+		final int a = analyzer.indexOf( from );
+		final int z = analyzer.indexOf( to );
+
+		return ( a != -1 && z != -1 && a < nodeCount && a > z && search( a, z ) != -1 );
+	}
+
+	/**
+	 * A breadth-first search from both a and z which returns the node where
+	 * the shortest chain meets, or -1 if there is no chain.
+	 */
+	private int search( final int a, final int z )
+	{
+		int forwardHead = 0;
+		int forwardTail = 0;
+		int backwardHead = 0;
+		int backwardTail = 0;
+
+		nextStamp();
+
+		forwardMark[a] = stamp;
+		forwardParent[a] = -1;
+		forwardDistance[a] = 0;
+		forwardQueue[forwardTail++] = a;
+
+		backwardMark[z] = stamp;
+		backwardParent[z] = -1;
+		backwardDistance[z] = 0;
+		backwardQueue[backwardTail++] = z;
+
+		while (forwardHead < forwardTail && backwardHead < backwardTail)
+		{
+			int best = -1;
+			int bestLength = Integer.MAX_VALUE;
+
+			if (forwardTail - forwardHead <= backwardTail - backwardHead)
+			{
+				final int end = forwardTail;
+
+				for (; forwardHead < end; forwardHead++)
+				{
+					final int x = forwardQueue[forwardHead];
+
+					for (int k = dependencyStart[x]; k < dependencyStart[x + 1]; k++)
+					{
+						final int y = dependencies[k];
+
+						// A node at or below z's depth can't depend on z.
+						if (forwardMark[y] == stamp || ( y != z && ( y < z || depth[y] <= depth[z] ) ))
+						{
+							continue;
+						}
+
+						forwardMark[y] = stamp;
+						forwardParent[y] = x;
+						forwardDistance[y] = forwardDistance[x] + 1;
+						forwardQueue[forwardTail++] = y;
+
+						if (backwardMark[y] == stamp && forwardDistance[y] + backwardDistance[y] < bestLength)
+						{
+							best = y;
+							bestLength = forwardDistance[y] + backwardDistance[y];
+						}
+					}
+				}
+			}
+			else
+			{
+				final int end = backwardTail;
+
+				for (; backwardHead < end; backwardHead++)
+				{
+					final int x = backwardQueue[backwardHead];
+
+					for (int k = dependentStart[x]; k < dependentStart[x + 1]; k++)
+					{
+						final int y = dependents[k];
+
+						// A node at or above a's depth can't be a dependency of a.
+						if (backwardMark[y] == stamp || ( y != a && ( y > a || depth[y] >= depth[a] ) ))
+						{
+							continue;
+						}
+
+						backwardMark[y] = stamp;
+						backwardParent[y] = x;
+						backwardDistance[y] = backwardDistance[x] + 1;
+						backwardQueue[backwardTail++] = y;
+
+						if (forwardMark[y] == stamp && forwardDistance[y] + backwardDistance[y] < bestLength)
+						{
+							best = y;
+							bestLength = forwardDistance[y] + backwardDistance[y];
+						}
+					}
+				}
+			}
+
+			if (best != -1)
+			{
+				return best;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the k shortest chains of dependencies from a node to a node it
+	 * depends on, shortest first.
+	 * 
+	 * @param from
+	 *        The dependent node where the chains start.
+	 * @param to
+	 *        The dependency where the chains end.
+	 * @param k
+	 *        The maximum number of chains to return.
+	 * @return A new list of at most k chains, each starting with from and
+	 *         ending with to where each node depends on the next.
+	 */
+	public List<List<DependencyNode<T>>> getShortestPaths( DependencyNode<T> from, DependencyNode<T> to, int k )
+	{
+		final List<List<DependencyNode<T>>> paths = new ArrayList<List<DependencyNode<T>>>();
+		final int a = analyzer.indexOf( from );
+		final int z = analyzer.indexOf( to );
+
+		if (a == -1 || z == -1 || a >= nodeCount || a < z || k <= 0)
+		{
+			return paths;
+		}
+
+		// The exact distance to z of every node between z and a which can
+		// reach it, the search only follows these nodes.
+		int head = 0;
+		int tail = 0;
+
+		nextStamp();
+
+		backwardMark[z] = stamp;
+		backwardDistance[z] = 0;
+		backwardQueue[tail++] = z;
+
+		while (head < tail)
+		{
+			final int x = backwardQueue[head++];
+
+			for (int j = dependentStart[x]; j < dependentStart[x + 1]; j++)
+			{
+				final int y = dependents[j];
+
+				if (backwardMark[y] != stamp && y <= a && ( y == a || depth[y] < depth[a] ))
+				{
+					backwardMark[y] = stamp;
+					backwardDistance[y] = backwardDistance[x] + 1;
+					backwardQueue[tail++] = y;
+				}
+			}
+		}
+
+		if (backwardMark[a] != stamp)
+		{
+			return paths;
+		}
+
+		final PriorityQueue<Chain> queue = new PriorityQueue<Chain>( 11, new Comparator<Chain>()
+		{
+			public int compare( Chain x, Chain y )
+			{
+				int d = x.estimate - y.estimate;
+
+				return ( d != 0 ? d : ( x.sequence < y.sequence ? -1 : ( x.sequence > y.sequence ? 1 : 0 ) ) );
+			}
+		} );
+
+		long sequence = 0;
+
+		queue.add( new Chain( a, null, backwardDistance[a], sequence++ ) );
+
+		while (!queue.isEmpty() && paths.size() < k)
+		{
+			final Chain chain = queue.poll();
+			final int x = chain.node;
+
+			if (x == z)
+			{
+				List<DependencyNode<T>> path = new ArrayList<DependencyNode<T>>( chain.length + 1 );
+
+				for (Chain c = chain; c != null; c = c.parent)
+				{
+					path.add( nodes[c.node] );
+				}
+
+				Collections.reverse( path );
+				paths.add( path );
+
+				continue;
+			}
+
+			for (int j = dependencyStart[x]; j < dependencyStart[x + 1]; j++)
+			{
+				final int y = dependencies[j];
+
+				if (backwardMark[y] == stamp)
+				{
+					queue.add( new Chain( y, chain, chain.length + 1 + backwardDistance[y], sequence++ ) );
+				}
+			}
+		}
+
+		return paths;
+	}
+
+	/**
+	 * A partial chain from the start of a search, linked back to the start.
+	 */
+	private static class Chain
+	{
+
+		private final int node;
+		private final Chain parent;
+		private final int length;
+		private final int estimate;
+		private final long sequence;
+
+		public Chain( int node, Chain parent, int estimate, long sequence )
+		{
+			this.node = node;
+			this.parent = parent;
+			this.length = ( parent == null ? 0 : parent.length + 1 );
+			this.estimate = estimate;
+			this.sequence = sequence;
+		}
+
+	}
+
+}
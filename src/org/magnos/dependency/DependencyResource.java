@@ -0,0 +1,252 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+/**
+ * A shared resource used by the values of {@link DependencyNode}s executed by
+ * a {@link DependencyScheduler}. A resource limits how many values using it
+ * may execute at once and optionally how many may start per second. The
+ * scheduler keeps statistics on each resource: the number of values waiting
+ * on it and how long values waited for it once their dependencies were done.
+ * <br/>
+ * <br/>
+ * A resource may be reused by subsequent executions, but not by two
+ * executions at the same time.
+ * 
+ * @author Philip Diffenderfer
+ */
+public class DependencyResource
+{
+
+	private final String name;
+	private final int concurrency;
+	private final long intervalNanos;
+
+	private int running = 0;
+	private long nextPermitNanos = Long.MIN_VALUE;
+
+	private volatile int queueDepth = 0;
+	private volatile long acquiredCount = 0;
+	private volatile long totalWaitNanos = 0;
+	private volatile long maximumWaitNanos = 0;
+
+	/**
+	 * Instantiates a new DependencyResource without a rate limit.
+	 * 
+	 * @param name
+	 *        The name of the resource.
+	 * @param concurrency
+	 *        The maximum number of values using the resource which may execute
+	 *        at once.
+	 */
+	public DependencyResource( String name, int concurrency )
+	{
+		this( name, concurrency, 0 );
+	}
+
+	/**
+	 * Instantiates a new DependencyResource.
+	 * 
+	 * @param name
+	 *        The name of the resource.
+	 * @param concurrency
+	 *        The maximum number of values using the resource which may execute
+	 *        at once.
+	 * @param permitsPerSecond
+	 *        The maximum number of values using the resource which may start
+	 *        per second, or zero for no limit.
+	 */
+	public DependencyResource( String name, int concurrency, double permitsPerSecond )
+	{
+		if (concurrency < 1)
+		{
+			throw new IllegalArgumentException( "concurrency must be at least 1" );
+		}
+
+		if (permitsPerSecond < 0)
+		{
+			throw new IllegalArgumentException( "permitsPerSecond must not be negative" );
+		}
+
+		this.name = name;
+		this.concurrency = concurrency;
+		this.intervalNanos = ( permitsPerSecond == 0 ? 0 : (long)( 1000000000L / permitsPerSecond ) );
+	}
+
+	/**
+	 * Returns whether a value may start using this resource now.
+	 * 
+	 * @param now
+	 *        The current time in nanoseconds.
+	 */
+	boolean isAvailable( long now )
+	{
+		return running < concurrency && isPermitted( now );
+	}
+
+	/**
+	 * Returns whether this resource is only unavailable because of its rate
+	 * limit, in which case it becomes available at {@link #getNextPermit()}.
+	 */
+	boolean isRateLimited( long now )
+	{
+		return running < concurrency && !isPermitted( now );
+	}
+
+	/**
+	 * Returns whether the rate limit allows a value to start now.
+	 */
+	private boolean isPermitted( long now )
+	{
+		return intervalNanos == 0 || nextPermitNanos == Long.MIN_VALUE || nextPermitNanos - now <= 0;
+	}
+
+	/**
+	 * @return The time in nanoseconds the next value may start.
+	 */
+	long getNextPermit()
+	{
+		return nextPermitNanos;
+	}
+
+	/**
+	 * A value starts using this resource.
+	 * 
+	 * @param now
+	 *        The current time in nanoseconds.
+	 * @param waitNanos
+	 *        The time the value waited since its dependencies were done.
+	 */
+	void acquire( long now, long waitNanos )
+	{
+		running++;
+
+		if (intervalNanos != 0)
+		{
+			nextPermitNanos = ( nextPermitNanos == Long.MIN_VALUE ? now : Math.max( now, nextPermitNanos ) ) + intervalNanos;
+		}
+
+		acquiredCount++;
+		totalWaitNanos += waitNanos;
+		maximumWaitNanos = Math.max( maximumWaitNanos, waitNanos );
+	}
+
+	/**
+	 * A value is done using this resource.
+	 */
+	void release()
+	{
+		running--;
+	}
+
+	/**
+	 * Sets the number of values waiting on this resource.
+	 */
+	void setQueueDepth( int queueDepth )
+	{
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * Resets the statistics of this resource.
+	 */
+	public void reset()
+	{
+		acquiredCount = 0;
+		totalWaitNanos = 0;
+		maximumWaitNanos = 0;
+	}
+
+	/**
+	 * @return The name of the resource.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return The maximum number of values using the resource which may
+	 *         execute at once.
+	 */
+	public int getConcurrency()
+	{
+		return concurrency;
+	}
+
+	/**
+	 * @return The minimum time in nanoseconds between values starting, or zero
+	 *         if the resource has no rate limit.
+	 */
+	public long getIntervalNanos()
+	{
+		return intervalNanos;
+	}
+
+	/**
+	 * @return The number of values whose dependencies are done but are waiting
+	 *         for this resource.
+	 */
+	public int getQueueDepth()
+	{
+		return queueDepth;
+	}
+
+	/**
+	 * @return The number of values which have started using this resource.
+	 */
+	public long getAcquiredCount()
+	{
+		return acquiredCount;
+	}
+
+	/**
+	 * @return The total time in nanoseconds values waited for this resource
+	 *         after their dependencies were done.
+	 */
+	public long getTotalWaitNanos()
+	{
+		return totalWaitNanos;
+	}
+
+	/**
+	 * @return The longest time in nanoseconds a value waited for this resource
+	 *         after its dependencies were done.
+	 */
+	public long getMaximumWaitNanos()
+	{
+		return maximumWaitNanos;
+	}
+
+	/**
+	 * @return The average time in nanoseconds values waited for this resource
+	 *         after their dependencies were done.
+	 */
+	public long getAverageWaitNanos()
+	{
+		long acquired = acquiredCount;
+
+		return ( acquired == 0 ? 0 : totalWaitNanos / acquired );
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+}
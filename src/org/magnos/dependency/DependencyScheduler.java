@@ -0,0 +1,487 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Executes the values of an analyzed graph on an {@link Executor} where each
+ * value is executed once all of its dependencies have been executed, and the
+ * values which use a {@link DependencyResource} never exceed its limits.<br/>
+ * <br/>
+ * Values whose dependencies are done are started in order of priority, where
+ * the priority of a value is the length of the longest chain of dependents
+ * after it. A value which can't start because a resource is at its limit
+ * waits in a queue for that resource, so values using other resources are not
+ * held back by it. The statistics of each resource are updated as the graph
+ * executes, and a {@link DependencyListener} can be notified as each value
+ * becomes ready, starts and finishes.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyScheduler<T>
+{
+
+	private static final DependencyResource[] NO_RESOURCES = {};
+
+	private final Executor executor;
+	private final Map<T, DependencyResource[]> resourceMap = new HashMap<T, DependencyResource[]>();
+	private DependencyListener<T> listener;
+	private Throwable error;
+
+	/**
+	 * Instantiates a new DependencyScheduler.
+	 * 
+	 * @param executor
+	 *        The executor which executes the values.
+	 */
+	public DependencyScheduler( Executor executor )
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the resources the given value uses when it executes.
+	 * 
+	 * @param value
+	 *        The value of a node.
+	 * @param resources
+	 *        The resources the value uses.
+	 */
+	public void setResources( T value, DependencyResource ... resources )
+	{
+		resourceMap.put( value, resources.clone() );
+	}
+
+	/**
+	 * Returns the resources the given value uses when it executes.
+	 * 
+	 * @param value
+	 *        The value of a node.
+	 * @return The non-null array of resources.
+	 */
+	public DependencyResource[] getResources( T value )
+	{
+		DependencyResource[] resources = resourceMap.get( value );
+
+		return ( resources == null ? NO_RESOURCES : resources );
+	}
+
+	/**
+	 * @return The listener notified of each value's execution, or null if
+	 *         there is none.
+	 */
+	public DependencyListener<T> getListener()
+	{
+		return listener;
+	}
+
+	/**
+	 * Sets the listener notified of each value's execution.
+	 * 
+	 * @param listener
+	 *        The listener, or null to not notify a listener.
+	 */
+	public void setListener( DependencyListener<T> listener )
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * Executes the values of the analyzer and waits for them to finish. If a
+	 * task fails no more values are started, the values already executing are
+	 * waited on, and the failure is given by {@link #getError()}.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which successfully analyzed the graph.
+	 * @param task
+	 *        The task to execute for each value.
+	 * @return True if every value executed, false if the graph had a cycle or a
+	 *         task failed.
+	 * @throws InterruptedException
+	 *         The thread was interrupted while waiting for values to execute.
+	 */
+	public boolean execute( DependencyAnalyzer<T> analyzer, DependencyTask<T> task ) throws InterruptedException
+	{
+		error = null;
+
+		if (!analyzer.isValid())
+		{
+			return false;
+		}
+
+		return new Execution( analyzer, task ).run();
+	}
+
+	/**
+	 * @return The failure of the last execution, or null if it didn't fail.
+	 */
+	public Throwable getError()
+	{
+		return error;
+	}
+
+	/**
+	 * The state of a single execution.
+	 */
+	private class Execution implements Comparator<Integer>
+	{
+
+		private final DependencyTask<T> task;
+		private final DependencyListener<T> listener;
+		private final DependencyNode<T>[] nodes;
+		private final int nodeCount;
+
+		private final int[] dependentStart;
+		private final int[] dependents;
+		private final int[] pending;
+		private final int[] priority;
+		private final long[] readyTime;
+		private final DependencyResource[][] tags;
+
+		private final List<DependencyResource> resources = new ArrayList<DependencyResource>();
+		private final List<PriorityQueue<Integer>> waiting = new ArrayList<PriorityQueue<Integer>>();
+		private final Map<DependencyResource, Integer> resourceIndex = new IdentityHashMap<DependencyResource, Integer>();
+		private final PriorityQueue<Integer> ready;
+
+		private final BlockingQueue<Integer> completions = new LinkedBlockingQueue<Integer>();
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		private int running = 0;
+
+		public Execution( DependencyAnalyzer<T> analyzer, DependencyTask<T> task )
+		{
+			final DependencyNode<T>[] nodes = analyzer.getOrderedNodes();
+			final int N = analyzer.getOrderedSize();
+
+			this.task = task;
+			this.listener = DependencyScheduler.this.listener;
+			this.nodes = nodes;
+			this.nodeCount = N;
+			this.dependentStart = new int[N + 1];
+			this.pending = new int[N];
+			this.priority = new int[N];
+			this.readyTime = new long[N];
+			this.tags = new DependencyResource[N][];
+			this.ready = new PriorityQueue<Integer>( Math.max( 1, N ), this );
+
+			for (int i = 0; i < N; i++)
+			{
+				for (DependencyNode<T> dependency : nodes[i].getDependencies())
+				{
+					int j = analyzer.indexOf( dependency );
+
+					if (j != -1)
+					{
+						dependentStart[j + 1]++;
+						pending[i]++;
+					}
+				}
+			}
+
+			for (int i = 0; i < N; i++)
+			{
+				dependentStart[i + 1] += dependentStart[i];
+			}
+
+			int[] next = new int[N];
+
+			dependents = new int[dependentStart[N]];
+
+			for (int i = 0; i < N; i++)
+			{
+				for (DependencyNode<T> dependency : nodes[i].getDependencies())
+				{
+					int j = analyzer.indexOf( dependency );
+
+					if (j != -1)
+					{
+						dependents[dependentStart[j] + next[j]++] = i;
+					}
+				}
+
+				tags[i] = getResources( nodes[i].getValue() );
+
+				for (DependencyResource r : tags[i])
+				{
+					if (!resourceIndex.containsKey( r ))
+					{
+						resourceIndex.put( r, resources.size() );
+						resources.add( r );
+						waiting.add( new PriorityQueue<Integer>( 11, this ) );
+					}
+				}
+			}
+
+			// Dependents always come after their dependencies in order.
+			for (int i = N - 1; i >= 0; i--)
+			{
+				for (int k = dependentStart[i]; k < dependentStart[i + 1]; k++)
+				{
+					priority[i] = Math.max( priority[i], priority[dependents[k]] + 1 );
+				}
+			}
+		}
+
+		public boolean run() throws InterruptedException
+		{
+			final long start = System.nanoTime();
+			int completed = 0;
+
+			for (int i = 0; i < nodeCount; i++)
+			{
+				if (pending[i] == 0)
+				{
+					ready( i, start );
+				}
+			}
+
+			while (completed < nodeCount)
+			{
+				long wake = Long.MAX_VALUE;
+
+				if (failure.get() == null)
+				{
+					wake = dispatch();
+				}
+				else if (running == 0)
+				{
+					break;
+				}
+
+				Integer done = ( wake == Long.MAX_VALUE ? completions.take() : completions.poll( wake - System.nanoTime(), TimeUnit.NANOSECONDS ) );
+
+				while (done != null)
+				{
+					complete( done );
+					completed++;
+					done = completions.poll();
+				}
+			}
+
+			for (DependencyResource r : resources)
+			{
+				r.setQueueDepth( 0 );
+			}
+
+			error = failure.get();
+
+			return ( error == null );
+		}
+
+		/**
+		 * Releases the resources of a finished value and readies its dependents.
+		 */
+		private void complete( int i )
+		{
+			final long now = System.nanoTime();
+
+			running--;
+
+			for (DependencyResource r : tags[i])
+			{
+				r.release();
+			}
+
+			for (int k = dependentStart[i]; k < dependentStart[i + 1]; k++)
+			{
+				int d = dependents[k];
+
+				if (--pending[d] == 0)
+				{
+					ready( d, now );
+				}
+			}
+		}
+
+		private void ready( int i, long now )
+		{
+			readyTime[i] = now;
+			ready.add( i );
+
+			if (listener != null)
+			{
+				listener.ready( nodes[i], now );
+			}
+		}
+
+		/**
+		 * Starts every ready value whose resources are available.
+		 * 
+		 * @return The time the next rate limited resource becomes available, or
+		 *         Long.MAX_VALUE if none of the waiting values are rate limited.
+		 */
+		private long dispatch()
+		{
+			final long now = System.nanoTime();
+			final int resourceCount = resources.size();
+			boolean started = true;
+
+			while (started)
+			{
+				started = false;
+
+				while (!ready.isEmpty())
+				{
+					int i = ready.poll();
+					int blocker = tryStart( i, now );
+
+					if (blocker == -1)
+					{
+						started = true;
+					}
+					else
+					{
+						waiting.get( blocker ).add( i );
+					}
+				}
+
+				for (int r = 0; r < resourceCount; r++)
+				{
+					PriorityQueue<Integer> queue = waiting.get( r );
+
+					while (!queue.isEmpty())
+					{
+						int blocker = tryStart( queue.peek(), now );
+
+						if (blocker == r)
+						{
+							break;
+						}
+
+						int i = queue.poll();
+
+						if (blocker == -1)
+						{
+							started = true;
+						}
+						else
+						{
+							waiting.get( blocker ).add( i );
+						}
+					}
+				}
+			}
+
+			long wake = Long.MAX_VALUE;
+
+			for (int r = 0; r < resourceCount; r++)
+			{
+				DependencyResource resource = resources.get( r );
+				int queueDepth = waiting.get( r ).size();
+
+				resource.setQueueDepth( queueDepth );
+
+				if (queueDepth > 0 && resource.isRateLimited( now ))
+				{
+					wake = Math.min( wake, resource.getNextPermit() );
+				}
+			}
+
+			return wake;
+		}
+
+		/**
+		 * Starts the given value if all of its resources are available.
+		 * 
+		 * @return -1 if the value was started, otherwise the index of the
+		 *         resource which is unavailable.
+		 */
+		private int tryStart( final int i, long now )
+		{
+			final DependencyResource[] tag = tags[i];
+
+			for (DependencyResource r : tag)
+			{
+				if (!r.isAvailable( now ))
+				{
+					return resourceIndex.get( r );
+				}
+			}
+
+			for (DependencyResource r : tag)
+			{
+				r.acquire( now, now - readyTime[i] );
+			}
+
+			running++;
+
+			try
+			{
+				executor.execute( new Runnable()
+				{
+					public void run()
+					{
+						if (listener != null)
+						{
+							listener.started( nodes[i], System.nanoTime() );
+						}
+
+						try
+						{
+							task.execute( nodes[i].getValue() );
+						}
+						catch (Throwable e)
+						{
+							failure.compareAndSet( null, e );
+						}
+						finally
+						{
+							if (listener != null)
+							{
+								listener.finished( nodes[i], System.nanoTime() );
+							}
+
+							completions.add( i );
+						}
+					}
+				} );
+			}
+			catch (RuntimeException e)
+			{
+				failure.compareAndSet( null, e );
+				completions.add( i );
+			}
+
+			return -1;
+		}
+
+		@Override
+		public int compare( Integer a, Integer b )
+		{
+			int d = priority[b] - priority[a];
+
+			return ( d != 0 ? d : a - b );
+		}
+
+	}
+
+}
@@ -0,0 +1,41 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+/**
+ * A unit of work executed for the value of each {@link DependencyNode} once
+ * all of its dependencies have been executed.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public interface DependencyTask<T>
+{
+
+	/**
+	 * Executes the work for the given value.
+	 * 
+	 * @param value
+	 *        The value of the node.
+	 * @throws Exception
+	 *         The work failed, no dependents of the node will be executed.
+	 */
+	public void execute( T value ) throws Exception;
+
+}
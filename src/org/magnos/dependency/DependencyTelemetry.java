@@ -0,0 +1,296 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Records where the time went when the values of an analyzed graph were
+ * executed. For each node it records how long it took for its dependencies to
+ * finish (measured from the first node becoming ready), how long it waited to
+ * start once ready, and how long it ran. These are also recorded in a
+ * {@link DependencyHistogram} for each measurement.<br/>
+ * <br/>
+ * {@link #getCriticalPath()} reconstructs the chain of nodes which actually
+ * determined when the execution finished: starting at the node which finished
+ * last, each step goes to the dependency which finished last.<br/>
+ * <br/>
+ * Pass this to {@link DependencyScheduler#setListener(DependencyListener)} or
+ * invoke the listener methods when executing the values directly.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The {@link DependencyNode} value type.
+ */
+public class DependencyTelemetry<T> implements DependencyListener<T>
+{
+
+	private final DependencyAnalyzer<T> analyzer;
+	private final DependencyNode<T>[] nodes;
+	private final int nodeCount;
+	private final long[] readyTime;
+	private final long[] startTime;
+	private final long[] finishTime;
+
+	private final DependencyHistogram waitHistogram = new DependencyHistogram();
+	private final DependencyHistogram runHistogram = new DependencyHistogram();
+
+	/**
+	 * Instantiates a new DependencyTelemetry for the nodes of an analyzer.
+	 * 
+	 * @param analyzer
+	 *        The analyzer which successfully analyzed the graph.
+	 */
+	public DependencyTelemetry( DependencyAnalyzer<T> analyzer )
+	{
+		this.analyzer = analyzer;
+		this.nodes = analyzer.getOrderedNodes();
+		this.nodeCount = analyzer.getOrderedSize();
+		this.readyTime = new long[nodeCount];
+		this.startTime = new long[nodeCount];
+		this.finishTime = new long[nodeCount];
+
+		reset();
+	}
+
+	/**
+	 * Removes all recorded times so the next execution can be recorded.
+	 */
+	public void reset()
+	{
+		Arrays.fill( readyTime, Long.MIN_VALUE );
+		Arrays.fill( startTime, Long.MIN_VALUE );
+		Arrays.fill( finishTime, Long.MIN_VALUE );
+
+		waitHistogram.reset();
+		runHistogram.reset();
+	}
+
+	@Override
+	public void ready( DependencyNode<T> node, long nanos )
+	{
+		int i = analyzer.indexOf( node );
+
+		if (i != -1)
+		{
+			readyTime[i] = nanos;
+		}
+	}
+
+	@Override
+	public void started( DependencyNode<T> node, long nanos )
+	{
+		int i = analyzer.indexOf( node );
+
+		if (i != -1)
+		{
+			startTime[i] = nanos;
+
+			if (readyTime[i] != Long.MIN_VALUE)
+			{
+				waitHistogram.record( nanos - readyTime[i] );
+			}
+		}
+	}
+
+	@Override
+	public void finished( DependencyNode<T> node, long nanos )
+	{
+		int i = analyzer.indexOf( node );
+
+		if (i != -1)
+		{
+			finishTime[i] = nanos;
+
+			if (startTime[i] != Long.MIN_VALUE)
+			{
+				runHistogram.record( nanos - startTime[i] );
+			}
+		}
+	}
+
+	/**
+	 * Returns a histogram of the time each node spent waiting for its
+	 * dependencies. This is computed on each call since the times are relative
+	 * to when the first node became ready.
+	 * 
+	 * @return A new histogram of dependency times.
+	 */
+	public DependencyHistogram getDependencyHistogram()
+	{
+		final DependencyHistogram histogram = new DependencyHistogram();
+		final long begin = getBeginTime();
+
+		for (int i = 0; i < nodeCount; i++)
+		{
+			if (readyTime[i] != Long.MIN_VALUE)
+			{
+				histogram.record( readyTime[i] - begin );
+			}
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * @return The histogram of the time nodes waited to start once ready.
+	 */
+	public DependencyHistogram getWaitHistogram()
+	{
+		return waitHistogram;
+	}
+
+	/**
+	 * @return The histogram of the time nodes ran.
+	 */
+	public DependencyHistogram getRunHistogram()
+	{
+		return runHistogram;
+	}
+
+	/**
+	 * @return The time the first node became ready, or Long.MIN_VALUE if no
+	 *         node became ready.
+	 */
+	private long getBeginTime()
+	{
+		long begin = Long.MIN_VALUE;
+
+		for (int i = 0; i < nodeCount; i++)
+		{
+			if (readyTime[i] != Long.MIN_VALUE && ( begin == Long.MIN_VALUE || readyTime[i] - begin < 0 ))
+			{
+				begin = readyTime[i];
+			}
+		}
+
+		return begin;
+	}
+
+	/**
+	 * Returns the time in nanoseconds from when the first node became ready to
+	 * when the given node became ready.
+	 * 
+	 * @param node
+	 *        The node to measure.
+	 * @return The time, or -1 if the node never became ready.
+	 */
+	public long getDependencyNanos( DependencyNode<T> node )
+	{
+		int i = analyzer.indexOf( node );
+
+		return ( i == -1 || readyTime[i] == Long.MIN_VALUE ? -1 : readyTime[i] - getBeginTime() );
+	}
+
+	/**
+	 * Returns the time in nanoseconds the given node waited to start once
+	 * ready.
+	 * 
+	 * @param node
+	 *        The node to measure.
+	 * @return The time, or -1 if the node never started.
+	 */
+	public long getWaitNanos( DependencyNode<T> node )
+	{
+		int i = analyzer.indexOf( node );
+
+		return ( i == -1 || readyTime[i] == Long.MIN_VALUE || startTime[i] == Long.MIN_VALUE ? -1 : startTime[i] - readyTime[i] );
+	}
+
+	/**
+	 * Returns the time in nanoseconds the given node ran.
+	 * 
+	 * @param node
+	 *        The node to measure.
+	 * @return The time, or -1 if the node never finished.
+	 */
+	public long getRunNanos( DependencyNode<T> node )
+	{
+		int i = analyzer.indexOf( node );
+
+		return ( i == -1 || startTime[i] == Long.MIN_VALUE || finishTime[i] == Long.MIN_VALUE ? -1 : finishTime[i] - startTime[i] );
+	}
+
+	/**
+	 * Returns the chain of nodes which determined when the execution finished,
+	 * ordered from the first node executed to the last.
+	 * 
+	 * @return A new list of nodes, empty if no node finished.
+	 */
+	public List<DependencyNode<T>> getCriticalPath()
+	{
+		List<DependencyNode<T>> path = new ArrayList<DependencyNode<T>>();
+		int current = -1;
+
+		for (int i = 0; i < nodeCount; i++)
+		{
+			if (finishTime[i] != Long.MIN_VALUE && ( current == -1 || finishTime[i] - finishTime[current] > 0 ))
+			{
+				current = i;
+			}
+		}
+
+		while (current != -1)
+		{
+			path.add( nodes[current] );
+
+			int last = -1;
+
+			for (DependencyNode<T> dependency : nodes[current].getDependencies())
+			{
+				int j = analyzer.indexOf( dependency );
+
+				if (j != -1 && finishTime[j] != Long.MIN_VALUE && ( last == -1 || finishTime[j] - finishTime[last] > 0 ))
+				{
+					last = j;
+				}
+			}
+
+			current = last;
+		}
+
+		Collections.reverse( path );
+
+		return path;
+	}
+
+	/**
+	 * @return The time in nanoseconds from when the first node became ready to
+	 *         when the last node finished.
+	 */
+	public long getElapsedNanos()
+	{
+		long begin = getBeginTime();
+		long end = Long.MIN_VALUE;
+
+		for (int i = 0; i < nodeCount; i++)
+		{
+			if (finishTime[i] != Long.MIN_VALUE && ( end == Long.MIN_VALUE || finishTime[i] - end > 0 ))
+			{
+				end = finishTime[i];
+			}
+		}
+
+		return ( begin == Long.MIN_VALUE || end == Long.MIN_VALUE ? 0 : end - begin );
+	}
+
+}
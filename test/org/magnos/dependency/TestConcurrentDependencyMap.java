@@ -0,0 +1,216 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+
+public class TestConcurrentDependencyMap
+{
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException
+	{
+		final ConcurrentDependencyMap<Integer, Integer> map = new ConcurrentDependencyMap<Integer, Integer>();
+		final int threadCount = 4;
+		final int perThread = 1000;
+		
+		Thread[] threads = new Thread[threadCount];
+		
+		for (int t = 0; t < threadCount; t++)
+		{
+			final int offset = t * perThread;
+			
+			threads[t] = new Thread() 
+			{
+				public void run()
+				{
+					for (int i = offset; i < offset + perThread; i++)
+					{
+						map.put( i, i );
+						
+						if (i > 0)
+						{
+							map.addDependency( i, i - 1 );
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		
+		DependencyAnalyzer<Integer> analyzer = map.toAnalyzer();
+		
+		assertTrue( analyzer.isValid() );
+		assertEquals( threadCount * perThread, analyzer.getOrderedSize() );
+		assertEquals( threadCount * perThread - 1, analyzer.getMaximumDepth() );
+	}
+	
+	@Test
+	public void testSnapshot()
+	{
+		ConcurrentDependencyMap<String, Integer> map = new ConcurrentDependencyMap<String, Integer>();
+		map.put( "value0", 0 );
+		map.put( "value1", 1 );
+		map.addDependency( "value1", "value0" );
+		
+		DependencyMap<String, Integer> snapshot = map.snapshot();
+		
+		map.put( "value2", 2 );
+		map.addDependency( "value0", "value2" );
+		
+		assertArrayEquals( new Integer[] { 0, 1 }, snapshot.toAnalyzer().getOrdered() );
+		assertArrayEquals( new Integer[] { 2, 0, 1 }, map.toAnalyzer().getOrdered() );
+	}
+	
+	@Test
+	public void testNodeMapWhileWriting() throws InterruptedException
+	{
+		final ConcurrentDependencyMap<Integer, Integer> map = new ConcurrentDependencyMap<Integer, Integer>();
+		final int count = 20000;
+		
+		Thread writer = new Thread()
+		{
+			public void run()
+			{
+				for (int i = 0; i < count; i++)
+				{
+					map.put( i, i );
+					
+					if (i > 0)
+					{
+						map.addDependency( i, i - 1 );
+					}
+				}
+			}
+		};
+		
+		writer.start();
+		
+		while (writer.isAlive())
+		{
+			Map<Integer, DependencyNode<Integer>> nodeMap = map.toNodeMap();
+			
+			// Keys are added in order, and each dependency is added before the
+			// next key, so only the last key may be missing its dependency.
+			for (int i = 0; i < nodeMap.size(); i++)
+			{
+				DependencyNode<Integer> dn = nodeMap.get( i );
+				
+				assertNotNull( dn );
+				
+				if (i > 0 && i < nodeMap.size() - 1)
+				{
+					assertEquals( 1, dn.getDependencies().size() );
+				}
+			}
+		}
+		
+		writer.join();
+		
+		assertEquals( count, map.toNodeMap().size() );
+	}
+	
+	@Test
+	public void testSnapshotWhileWriting() throws InterruptedException
+	{
+		final ConcurrentDependencyMap<Integer, Integer> map = new ConcurrentDependencyMap<Integer, Integer>();
+		final int threadCount = 4;
+		final int perThread = 20000;
+		
+		Thread[] threads = new Thread[threadCount];
+		
+		for (int t = 0; t < threadCount; t++)
+		{
+			final int offset = t * perThread;
+			
+			threads[t] = new Thread() 
+			{
+				public void run()
+				{
+					for (int i = offset; i < offset + perThread; i++)
+					{
+						map.put( i, 0 );
+						
+						if (i > offset)
+						{
+							map.addDependency( i, i - 1 );
+							map.put( i - 1, 1 );
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		
+		boolean writing = true;
+		
+		while (writing)
+		{
+			writing = false;
+			
+			for (Thread thread : threads)
+			{
+				writing |= thread.isAlive();
+			}
+			
+			DependencyMap<Integer, Integer> snapshot = map.snapshot();
+			
+			// Each thread's modifications are seen in the order they were made.
+			for (int t = 0; t < threadCount; t++)
+			{
+				int offset = t * perThread;
+				int last = offset - 1;
+				
+				while (last + 1 < offset + perThread && snapshot.get( last + 1 ) != null)
+				{
+					last++;
+				}
+				
+				for (int i = offset; i < last - 1; i++)
+				{
+					assertEquals( Integer.valueOf( 1 ), snapshot.get( i ) );
+					assertEquals( i > offset, snapshot.getDependencies( i ).contains( i - 1 ) );
+				}
+				
+				// The last value's dependency is added before its dependency is
+				// updated.
+				if (last > offset && snapshot.get( last - 1 ) == 1)
+				{
+					assertTrue( snapshot.getDependencies( last ).contains( last - 1 ) );
+				}
+				
+				if (last >= offset)
+				{
+					assertEquals( Integer.valueOf( 0 ), snapshot.get( last ) );
+				}
+			}
+		}
+		
+		assertEquals( threadCount * perThread, map.snapshot().getValueMap().size() );
+	}
+	
+}
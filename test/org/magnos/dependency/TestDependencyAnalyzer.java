@@ -111,6 +111,9 @@ public class TestDependencyAnalyzer
 		analyzer.analyze( Arrays.asList( value0, value1, value2, value3, value4 ) );
 		
 		assertFalse( analyzer.isValid() );
+		assertEquals( 0, analyzer.indexOf( value4 ) );
+		assertSame( value3, analyzer.getCycle()[ analyzer.indexOf( value3 ) - 1 ] );
+		assertEquals( -1, analyzer.indexOf( new DependencyNode<String>( "value5" ) ) );
 	}
 	
 	@Test
@@ -167,4 +170,128 @@ public class TestDependencyAnalyzer
 		assertEquals( Arrays.asList( "value2" ), groups[ 3 ] );
 	}
 	
+	@Test
+	public void testOrderedByLevel()
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+		
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+		value3.addDependency( value0 );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1, value2, value3 ) );
+		
+		assertTrue( analyzer.isValid() );
+		assertArrayEquals( new Object[] { "value0", "value1", "value3", "value2" }, analyzer.getOrdered() );
+		assertArrayEquals( new int[] { 0, 1, 3, 4 }, analyzer.getLevelOffsets() );
+		assertEquals( 2, value3.getIndex() );
+		
+		List<String>[] groups = analyzer.getLevels();
+		
+		assertNotSame( groups, analyzer.getLevels() );
+		assertSame( groups[ 1 ], analyzer.getLevel( 1 ) );
+		
+		groups[ 1 ] = null;
+		
+		assertEquals( Arrays.asList( "value1", "value3" ), analyzer.getLevels()[ 1 ] );
+		assertEquals( Arrays.asList( "value1", "value3" ), analyzer.getLevel( 1 ) );
+		assertEquals( Arrays.asList( value2 ), analyzer.getLevelNodes( 2 ) );
+	}
+	
+	@Test
+	public void testLenient()
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+		DependencyNode<String> value4 = new DependencyNode<String>( "value4" );
+		
+		value0.addDependency( value1 );
+		value1.addDependency( value2 );
+		value2.addDependency( value0 );
+		value3.addDependency( value1 );
+		value4.addDependency( value4 );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		
+		assertFalse( analyzer.analyzeLenient( Arrays.asList( value0, value1, value2, value3, value4 ) ) );
+		assertTrue( analyzer.isValid() );
+		assertEquals( 5, analyzer.getOrderedSize() );
+		assertEquals( 2, analyzer.getBrokenSize() );
+		
+		for (int i = 0; i < analyzer.getBrokenSize(); i++)
+		{
+			DependencyNode<String> dependent = analyzer.getBrokenDependents()[ i ];
+			DependencyNode<String> dependency = analyzer.getBrokenDependencies()[ i ];
+			
+			assertTrue( dependent.getDependencies().contains( dependency ) );
+			assertTrue( dependent == value4 || dependent.getIndex() < dependency.getIndex() );
+		}
+		
+		assertTrue( value3.getIndex() > value1.getIndex() );
+		assertEquals( 1, value0.getDependencyCount() );
+		assertEquals( 1, value4.getDependencyCount() );
+		
+		value2.removeDependency( value0 );
+		value4.removeDependency( value4 );
+		
+		assertTrue( analyzer.analyzeLenient( Arrays.asList( value0, value1, value2, value3, value4 ) ) );
+		assertEquals( 0, analyzer.getBrokenSize() );
+	}
+	
+	@Test
+	public void testReusable()
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+		
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+		value3.addDependency( value0 );
+		
+		List<DependencyNode<String>> nodes = Arrays.asList( value0, value1, value2, value3 );
+		String[] empty = {};
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>( true );
+		
+		assertTrue( analyzer.isReusable() );
+		assertTrue( analyzer.analyze( nodes, empty ) );
+		
+		DependencyNode<String>[] ordered = analyzer.getOrderedNodes();
+		String[] values = analyzer.getOrdered();
+		int[] offsets = analyzer.getLevelOffsets();
+		
+		assertTrue( analyzer.analyze( nodes, empty ) );
+		assertSame( ordered, analyzer.getOrderedNodes() );
+		assertSame( values, analyzer.getOrdered() );
+		assertSame( offsets, analyzer.getLevelOffsets() );
+		assertArrayEquals( new Object[] { "value0", "value1", "value3", "value2" }, analyzer.getOrdered() );
+		assertArrayEquals( new int[] { 0, 1, 3, 4 }, analyzer.getLevelOffsets() );
+		
+		value0.addDependency( value2 );
+		
+		assertFalse( analyzer.analyze( nodes, empty ) );
+		assertEquals( 4, analyzer.getCycleSize() );
+		assertEquals( -1, value3.getDepth() );
+		
+		value0.removeDependency( value2 );
+		
+		assertTrue( analyzer.analyze( nodes, empty ) );
+		assertSame( ordered, analyzer.getOrderedNodes() );
+		assertArrayEquals( new Object[] { "value0", "value1", "value3", "value2" }, analyzer.getOrdered() );
+		
+		assertTrue( analyzer.analyze( Arrays.asList( value0, value2 ), empty ) );
+		assertEquals( 2, analyzer.getNodeCount() );
+		assertEquals( 2, analyzer.getOrderedSize() );
+		assertSame( value2, analyzer.getOrderedNodes()[ 1 ] );
+		assertEquals( 2, value2.getDepth() );
+	}
+	
 }
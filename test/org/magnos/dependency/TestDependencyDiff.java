@@ -0,0 +1,175 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+
+public class TestDependencyDiff
+{
+
+	private DependencyMap<String, Integer> create()
+	{
+		DependencyMap<String, Integer> map = new DependencyMap<String, Integer>();
+		map.put( "value0", 0 );
+		map.put( "value1", 1 );
+		map.put( "value2", 2 );
+		map.put( "value3", 3 );
+		map.addDependency( "value1", "value0" );
+		map.addDependency( "value2", "value1" );
+		map.addDependency( "value3", "value0" );
+
+		return map;
+	}
+
+	@Test
+	public void testDiff()
+	{
+		DependencyMap<String, Integer> from = create();
+		DependencyMap<String, Integer> to = create();
+
+		assertTrue( new DependencyDiff<String, Integer>( from, to ).isEmpty() );
+
+		to.put( "value1", 10 );
+		to.put( "value4", 4 );
+		to.addDependency( "value4", "value3" );
+		to.getDependencies( "value3" ).remove( "value0" );
+		to.addDependency( "value3", "missing" );
+
+		DependencyDiff<String, Integer> diff = new DependencyDiff<String, Integer>( from, to );
+
+		assertTrue( diff.isStructural() );
+		assertEquals( Arrays.asList( "value4" ), diff.getAddedKeys() );
+		assertTrue( diff.getRemovedKeys().isEmpty() );
+		assertEquals( Arrays.asList( "value1" ), diff.getChangedKeys() );
+		assertEquals( Arrays.asList( new DependencyEdge<String>( "value4", "value3" ) ), diff.getAddedEdges() );
+		assertEquals( Arrays.asList( new DependencyEdge<String>( "value3", "value0" ) ), diff.getRemovedEdges() );
+	}
+
+	@Test
+	public void testPatchValues()
+	{
+		DependencyMap<String, Integer> from = create();
+		DependencyMap<String, Integer> to = create();
+		to.put( "value2", 20 );
+
+		Map<String, DependencyNode<Integer>> nodes = from.toNodeMap();
+		DependencyAnalyzer<Integer> analyzer = new DependencyAnalyzer<Integer>();
+		analyzer.analyze( nodes.values() );
+
+		Object[] ordered = analyzer.getOrdered();
+
+		assertTrue( new DependencyDiff<String, Integer>( from, to ).patch( nodes, analyzer ).isEmpty() );
+		assertSame( ordered, analyzer.getOrdered() );
+		assertArrayEquals( new Object[] { 0, 1, 3, 20 }, analyzer.getOrdered() );
+	}
+
+	@Test
+	public void testPatchStructure()
+	{
+		DependencyMap<String, Integer> from = create();
+		DependencyMap<String, Integer> to = create();
+		to.put( "value4", 4 );
+		to.addDependency( "value0", "value4" );
+		to.addDependency( "value3", "value2" );
+
+		DependencyMap<String, Integer> removed = new DependencyMap<String, Integer>();
+		removed.put( "value0", 0 );
+		removed.put( "value1", 1 );
+		removed.put( "value2", 2 );
+		removed.addDependency( "value1", "value0" );
+		removed.addDependency( "value2", "value1" );
+
+		Map<String, DependencyNode<Integer>> nodes = from.toNodeMap();
+		DependencyAnalyzer<Integer> analyzer = new DependencyAnalyzer<Integer>( true );
+		analyzer.analyze( nodes.values() );
+
+		DependencyDiff<String, Integer> diff = new DependencyDiff<String, Integer>( from, to );
+
+		assertEquals( Arrays.asList( "value0", "value1", "value2", "value3" ), diff.patch( nodes, analyzer ) );
+		assertTrue( analyzer.isValid() );
+		assertEquals( 5, analyzer.getOrderedSize() );
+		assertEquals( Arrays.asList( 4, 0, 1, 2, 3 ), Arrays.asList( analyzer.getOrdered() ).subList( 0, 5 ) );
+
+		assertEquals( Arrays.asList( "value0", "value1", "value2" ), new DependencyDiff<String, Integer>( to, removed ).patch( nodes, analyzer ) );
+		assertFalse( nodes.containsKey( "value3" ) );
+		assertEquals( 3, analyzer.getOrderedSize() );
+		assertEquals( 0, nodes.get( "value0" ).getDependencyCount() );
+		assertEquals( 0, nodes.get( "value0" ).getDepth() );
+	}
+
+	@Test
+	public void testPatchKeepsIndex()
+	{
+		DependencyMap<String, Integer> from = create();
+		DependencyMap<String, Integer> to = create();
+		to.put( "value4", 4 );
+		to.addDependency( "value4", "value1" );
+		to.addDependency( "value2", "value3" );
+
+		Map<String, DependencyNode<Integer>> nodes = from.toNodeMap();
+		DependencyAnalyzer<Integer> analyzer = new DependencyAnalyzer<Integer>();
+		analyzer.analyze( nodes.values() );
+
+		Object[] ordered = analyzer.getOrdered();
+		int[] offsets = analyzer.getLevelOffsets();
+		int[] index = new int[4];
+
+		for (int i = 0; i < 4; i++)
+		{
+			index[i] = nodes.get( "value" + i ).getIndex();
+		}
+
+		assertTrue( new DependencyDiff<String, Integer>( from, to ).patch( nodes, analyzer ).isEmpty() );
+		assertTrue( analyzer.isValid() );
+		assertSame( offsets, analyzer.getLevelOffsets() );
+		assertNotSame( ordered, analyzer.getOrdered() );
+		assertArrayEquals( new int[] { 0, 1, 3, 5 }, analyzer.getLevelOffsets() );
+		assertArrayEquals( new Object[] { 0, 1, 3, 2, 4 }, analyzer.getOrdered() );
+
+		for (int i = 0; i < 4; i++)
+		{
+			assertEquals( index[i], nodes.get( "value" + i ).getIndex() );
+		}
+
+		assertEquals( 4, nodes.get( "value4" ).getIndex() );
+		assertEquals( 2, nodes.get( "value4" ).getDepth() );
+	}
+
+	@Test
+	public void testPatchCycle()
+	{
+		DependencyMap<String, Integer> from = create();
+		DependencyMap<String, Integer> to = create();
+		to.addDependency( "value0", "value2" );
+
+		Map<String, DependencyNode<Integer>> nodes = from.toNodeMap();
+		DependencyAnalyzer<Integer> analyzer = new DependencyAnalyzer<Integer>();
+		analyzer.analyze( nodes.values() );
+
+		new DependencyDiff<String, Integer>( from, to ).patch( nodes, analyzer );
+
+		assertFalse( analyzer.isValid() );
+		assertEquals( 4, analyzer.getCycleSize() );
+	}
+
+}
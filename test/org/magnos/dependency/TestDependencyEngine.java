@@ -0,0 +1,247 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+public class TestDependencyEngine
+{
+
+	private final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+	@After
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void testDiscovery() throws InterruptedException
+	{
+		final DependencyEngine<Integer> engine = new DependencyEngine<Integer>( executor );
+		final List<Integer> executed = Collections.synchronizedList( new ArrayList<Integer>() );
+		final DependencyNode<Integer> root = new DependencyNode<Integer>( 1 );
+		final DependencyNode<Integer> last = new DependencyNode<Integer>( 0 );
+
+		assertTrue( engine.add( root ) );
+		assertTrue( engine.addDependency( last, root ) );
+
+		// Each value below 64 discovers two more values, which the last value
+		// also waits on.
+		assertTrue( engine.run( new DependencyTask<Integer>()
+		{
+			public void execute( Integer value )
+			{
+				executed.add( value );
+
+				if (value == 0 || value >= 64)
+				{
+					return;
+				}
+
+				DependencyNode<Integer> parent = find( value );
+
+				for (int i = 0; i < 2; i++)
+				{
+					DependencyNode<Integer> child = new DependencyNode<Integer>( value * 2 + i );
+					child.addDependency( parent );
+
+					synchronized (nodes)
+					{
+						nodes.add( child );
+					}
+
+					assertTrue( engine.add( child ) );
+					assertTrue( engine.addDependency( last, child ) );
+				}
+			}
+
+			private DependencyNode<Integer> find( Integer value )
+			{
+				synchronized (nodes)
+				{
+					for (DependencyNode<Integer> dn : nodes)
+					{
+						if (dn.getValue().equals( value ))
+						{
+							return dn;
+						}
+					}
+				}
+
+				return root;
+			}
+
+			private final List<DependencyNode<Integer>> nodes = new ArrayList<DependencyNode<Integer>>();
+		} ) );
+
+		assertEquals( 128, executed.size() );
+		assertEquals( 128, engine.getNodeCount() );
+		assertEquals( 128, engine.getCompletedCount() );
+		assertEquals( Integer.valueOf( 0 ), executed.get( 127 ) );
+
+		for (int i = 2; i < 128; i++)
+		{
+			assertTrue( executed.indexOf( i / 2 ) < executed.indexOf( i ) );
+		}
+	}
+
+	@Test
+	public void testCycles()
+	{
+		DependencyEngine<String> engine = new DependencyEngine<String>( executor );
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+
+		assertTrue( engine.add( value2 ) );
+		assertEquals( 3, engine.getNodeCount() );
+		assertFalse( engine.addDependency( value0, value2 ) );
+		assertFalse( value0.getDependencies().contains( value2 ) );
+
+		value3.addDependency( value3 );
+
+		assertFalse( engine.add( value3 ) );
+		assertEquals( 3, engine.getNodeCount() );
+		assertTrue( engine.addDependency( value0, new DependencyNode<String>( "value4" ) ) );
+		assertEquals( 4, engine.getNodeCount() );
+	}
+
+	@Test
+	public void testStarted() throws InterruptedException
+	{
+		final DependencyEngine<String> engine = new DependencyEngine<String>( executor );
+		final DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		final DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+
+		engine.add( value0 );
+
+		assertTrue( engine.run( new DependencyTask<String>()
+		{
+			public void execute( String value )
+			{
+				if (value.equals( "value0" ))
+				{
+					assertFalse( engine.addDependency( value0, value1 ) );
+					assertTrue( engine.addDependency( value1, value0 ) );
+				}
+			}
+		} ) );
+
+		assertTrue( engine.isComplete( value1 ) );
+		assertFalse( engine.addDependency( value0, value1 ) );
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException
+	{
+		final Exception failure = new Exception();
+		final List<String> executed = Collections.synchronizedList( new ArrayList<String>() );
+
+		DependencyEngine<String> engine = new DependencyEngine<String>( executor );
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+
+		value1.addDependency( value0 );
+		engine.add( value1 );
+
+		assertFalse( engine.run( new DependencyTask<String>()
+		{
+			public void execute( String value ) throws Exception
+			{
+				throw failure;
+			}
+		} ) );
+
+		assertSame( failure, engine.getError() );
+		assertEquals( 0, engine.getCompletedCount() );
+
+		assertTrue( engine.run( new DependencyTask<String>()
+		{
+			public void execute( String value )
+			{
+				executed.add( value );
+			}
+		} ) );
+
+		assertNull( engine.getError() );
+		assertEquals( 2, engine.getCompletedCount() );
+		assertEquals( Arrays.asList( "value0", "value1" ), executed );
+	}
+
+	@Test
+	public void testInterrupted() throws InterruptedException
+	{
+		final Thread caller = Thread.currentThread();
+		final DependencyEngine<String> engine = new DependencyEngine<String>( executor );
+		final DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+
+		engine.add( value0 );
+
+		try
+		{
+			engine.run( new DependencyTask<String>()
+			{
+				public void execute( String value )
+				{
+					caller.interrupt();
+				}
+			} );
+
+			// The interrupt arrived after the run finished waiting.
+			Thread.interrupted();
+		}
+		catch (InterruptedException e)
+		{
+			assertFalse( Thread.currentThread().isInterrupted() );
+		}
+
+		engine.add( new DependencyNode<String>( "value1" ) );
+
+		long timeout = System.currentTimeMillis() + 5000;
+		boolean ran = false;
+
+		while (!ran && System.currentTimeMillis() < timeout)
+		{
+			ran = engine.run( new DependencyTask<String>()
+			{
+				public void execute( String value )
+				{
+				}
+			} );
+		}
+
+		assertTrue( ran );
+		assertEquals( 2, engine.getCompletedCount() );
+	}
+
+}
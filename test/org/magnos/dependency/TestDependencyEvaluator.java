@@ -0,0 +1,213 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+
+public class TestDependencyEvaluator
+{
+
+	private static class Sum implements DependencyEvaluator.Function<String, Integer>
+	{
+		private final Map<String, Integer> base;
+		
+		public Sum( Map<String, Integer> base )
+		{
+			this.base = base;
+		}
+		
+		public Integer evaluate( String value, Map<String, Integer> dependencyResults )
+		{
+			int sum = base.get( value );
+			
+			for (Integer r : dependencyResults.values())
+			{
+				sum += r;
+			}
+			
+			return sum;
+		}
+	}
+	
+	@Test
+	public void testIncremental()
+	{
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put( "value0", 1 );
+		base.put( "value1", 2 );
+		base.put( "value2", 3 );
+		base.put( "value3", 4 );
+		
+		DependencyMap<String, String> map = new DependencyMap<String, String>();
+		map.put( "value0", "value0" );
+		map.put( "value1", "value1" );
+		map.put( "value2", "value2" );
+		map.put( "value3", "value3" );
+		map.addDependency( "value1", "value0" );
+		map.addDependency( "value2", "value1" );
+		map.addDependency( "value3", "value0" );
+		
+		DependencyAnalyzer<String> analyzer = map.toAnalyzer();
+		DependencyEvaluator<String, Integer> evaluator = new DependencyEvaluator<String, Integer>( new Sum( base ) );
+		
+		assertTrue( evaluator.evaluate( analyzer ) );
+		assertEquals( 4, evaluator.getRecomputedCount() );
+		assertEquals( Integer.valueOf( 6 ), evaluator.getResult( "value2" ) );
+		assertEquals( Integer.valueOf( 5 ), evaluator.getResult( "value3" ) );
+		
+		assertTrue( evaluator.evaluate( map.toAnalyzer() ) );
+		assertEquals( 0, evaluator.getRecomputedCount() );
+		
+		base.put( "value1", 5 );
+		evaluator.invalidate( "value1" );
+		
+		assertTrue( evaluator.evaluate( analyzer ) );
+		assertEquals( 2, evaluator.getRecomputedCount() );
+		assertEquals( Integer.valueOf( 9 ), evaluator.getResult( "value2" ) );
+	}
+	
+	@Test
+	public void testEarlyCutoff()
+	{
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put( "value0", 1 );
+		base.put( "value1", 2 );
+		base.put( "value2", 3 );
+		
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1, value2 ) );
+		
+		DependencyEvaluator<String, Integer> evaluator = new DependencyEvaluator<String, Integer>( new Sum( base ) );
+		evaluator.evaluate( analyzer );
+		
+		evaluator.invalidate( "value0" );
+		evaluator.evaluate( analyzer );
+		
+		assertEquals( 1, evaluator.getRecomputedCount() );
+	}
+	
+	@Test
+	public void testEviction()
+	{
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put( "value0", 1 );
+		base.put( "value1", 2 );
+		base.put( "value2", 3 );
+		
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1, value2 ) );
+		
+		DependencyEvaluator<String, Integer> evaluator = new DependencyEvaluator<String, Integer>( new Sum( base ) );
+		evaluator.setMaximumWeight( 2 );
+		evaluator.evaluate( analyzer );
+		
+		assertEquals( 2, evaluator.getCacheSize() );
+		assertEquals( 2, evaluator.getWeight() );
+		assertNull( evaluator.getResult( "value0" ) );
+	}
+	
+	@Test
+	public void testSwappedDependency()
+	{
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put( "x", 0 );
+		base.put( "Aa", 1 );
+		base.put( "BB", 100 );
+		
+		DependencyMap<String, String> map = new DependencyMap<String, String>();
+		map.put( "x", "x" );
+		map.put( "Aa", "Aa" );
+		map.addDependency( "x", "Aa" );
+		
+		DependencyEvaluator<String, Integer> evaluator = new DependencyEvaluator<String, Integer>( new Sum( base ) );
+		
+		assertTrue( evaluator.evaluate( map.toAnalyzer() ) );
+		assertEquals( Integer.valueOf( 1 ), evaluator.getResult( "x" ) );
+		
+		// "Aa" and "BB" have the same hash code.
+		DependencyMap<String, String> swapped = new DependencyMap<String, String>();
+		swapped.put( "x", "x" );
+		swapped.put( "BB", "BB" );
+		swapped.addDependency( "x", "BB" );
+		
+		assertTrue( evaluator.evaluate( swapped.toAnalyzer() ) );
+		assertEquals( 2, evaluator.getRecomputedCount() );
+		assertEquals( Integer.valueOf( 100 ), evaluator.getResult( "x" ) );
+		assertNull( evaluator.getResult( "Aa" ) );
+		assertEquals( 2, evaluator.getCacheSize() );
+	}
+	
+	@Test
+	public void testEvictionBelowGraphSize()
+	{
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put( "value0", 1 );
+		base.put( "value1", 2 );
+		base.put( "value2", 3 );
+		base.put( "value3", 4 );
+		
+		DependencyMap<String, String> map = new DependencyMap<String, String>();
+		map.put( "value0", "value0" );
+		map.put( "value1", "value1" );
+		map.put( "value2", "value2" );
+		map.put( "value3", "value3" );
+		map.addDependency( "value1", "value0" );
+		map.addDependency( "value2", "value1" );
+		map.addDependency( "value3", "value2" );
+		
+		DependencyAnalyzer<String> analyzer = map.toAnalyzer();
+		DependencyEvaluator<String, Integer> evaluator = new DependencyEvaluator<String, Integer>( new Sum( base ) );
+		evaluator.setMaximumWeight( 2 );
+		
+		assertTrue( evaluator.evaluate( analyzer ) );
+		assertEquals( 4, evaluator.getRecomputedCount() );
+		assertEquals( 2, evaluator.getCacheSize() );
+		assertEquals( Integer.valueOf( 1 ), evaluator.getResult( "value0" ) );
+		assertEquals( Integer.valueOf( 3 ), evaluator.getResult( "value1" ) );
+		
+		// Only the evicted results are recomputed, the kept roots don't
+		// cascade into their dependents.
+		assertTrue( evaluator.evaluate( analyzer ) );
+		assertEquals( 2, evaluator.getRecomputedCount() );
+		assertEquals( 2, evaluator.getCacheSize() );
+		
+		base.put( "value1", 5 );
+		evaluator.invalidate( "value1" );
+		
+		assertTrue( evaluator.evaluate( analyzer ) );
+		assertEquals( 3, evaluator.getRecomputedCount() );
+		assertEquals( Integer.valueOf( 6 ), evaluator.getResult( "value1" ) );
+	}
+	
+}
@@ -0,0 +1,164 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+
+public class TestDependencyExporter
+{
+
+	private ByteArrayOutputStream out = new ByteArrayOutputStream();
+	private DependencyExporter exporter = new DependencyExporter( Channels.newChannel( out ), 16 );
+
+	private DependencyAnalyzer<String> analyze()
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value\"1\"" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2\u00e9" );
+
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value2, value1, value0 ) );
+
+		return analyzer;
+	}
+
+	private String output() throws IOException
+	{
+		exporter.flush();
+
+		return new String( out.toByteArray(), "UTF-8" );
+	}
+
+	@Test
+	public void testDot() throws IOException
+	{
+		exporter.exportDot( analyze() );
+
+		String dot = output();
+
+		assertTrue( dot.startsWith( "digraph dependencies {\n" ) );
+		assertTrue( dot.contains( "  { rank=same; n0 [label=\"value0\"]; }\n" ) );
+		assertTrue( dot.contains( "n1 [label=\"value\\\"1\\\"\"]" ) );
+		assertTrue( dot.contains( "n2 [label=\"value2\u00e9\"]" ) );
+		assertTrue( dot.contains( "  n1 -> n0;\n" ) );
+		assertTrue( dot.contains( "  n2 -> n1;\n" ) );
+		assertTrue( dot.endsWith( "}\n" ) );
+	}
+
+	@Test
+	public void testDotCycle() throws IOException
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+
+		value0.addDependency( value1 );
+		value1.addDependency( value0 );
+
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1 ) );
+
+		exporter.exportDot( analyzer );
+
+		String dot = output();
+
+		assertTrue( dot.contains( "color=red" ) );
+		assertTrue( dot.contains( "n0 -> n1;" ) );
+		assertTrue( dot.contains( "n1 -> n0;" ) );
+	}
+
+	@Test
+	public void testJson() throws IOException
+	{
+		exporter.exportJson( analyze() );
+
+		String[] lines = output().split( "\n" );
+
+		assertEquals( 4, lines.length );
+		assertEquals( "{\"type\":\"analysis\",\"valid\":true,\"size\":3,\"orderedSize\":3,\"levels\":3,\"cycleSize\":0,\"brokenSize\":0}", lines[0] );
+		assertEquals( "{\"type\":\"node\",\"index\":0,\"depth\":0,\"value\":\"value0\",\"dependencies\":[]}", lines[1] );
+		assertEquals( "{\"type\":\"node\",\"index\":1,\"depth\":1,\"value\":\"value\\\"1\\\"\",\"dependencies\":[0]}", lines[2] );
+		assertEquals( "{\"type\":\"node\",\"index\":2,\"depth\":2,\"value\":\"value2\u00e9\",\"dependencies\":[1]}", lines[3] );
+	}
+
+	@Test
+	public void testBinary() throws IOException
+	{
+		exporter.exportBinary( analyze() );
+		exporter.flush();
+
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+
+		assertEquals( DependencyExporter.MAGIC, in.readInt() );
+		assertEquals( DependencyExporter.KIND_ANALYSIS, in.readInt() );
+		assertEquals( 1, in.readInt() );
+		assertEquals( 3, in.readInt() );
+		assertEquals( 3, in.readInt() );
+		assertEquals( 3, in.readInt() );
+
+		String[] values = { "value0", "value\"1\"", "value2\u00e9" };
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals( i, in.readInt() );
+
+			byte[] value = new byte[in.readInt()];
+			in.readFully( value );
+
+			assertEquals( values[i], new String( value, "UTF-8" ) );
+			assertEquals( i == 0 ? 0 : 1, in.readInt() );
+
+			if (i > 0)
+			{
+				assertEquals( i - 1, in.readInt() );
+			}
+		}
+
+		assertEquals( 0, in.readInt() );
+		assertEquals( -1, in.read() );
+	}
+
+	@Test
+	public void testMap() throws IOException
+	{
+		DependencyMap<String, Integer> map = new DependencyMap<String, Integer>();
+		map.put( "a", 1 );
+		map.addDependency( "a", "b" );
+		map.addDependency( "c", "a" );
+
+		exporter.exportJson( map );
+
+		String[] lines = output().split( "\n" );
+
+		assertEquals( 2, lines.length );
+		assertEquals( "{\"key\":\"a\",\"value\":\"1\",\"dependencies\":[\"b\"]}", lines[0] );
+		assertEquals( "{\"key\":\"c\",\"value\":null,\"dependencies\":[\"a\"]}", lines[1] );
+	}
+
+}
@@ -0,0 +1,188 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestDependencyImporter
+{
+
+	private File file;
+	
+	@Before
+	public void create() throws IOException
+	{
+		file = File.createTempFile( "dependz", ".edges" );
+	}
+	
+	@After
+	public void delete()
+	{
+		file.delete();
+	}
+	
+	@Test
+	public void testText() throws IOException
+	{
+		BufferedWriter out = new BufferedWriter( new FileWriter( file ) );
+		out.write( "# comment\n" );
+		out.write( "value0 value1\n" );
+		out.write( "\n" );
+		out.write( "value2,value0\r\n" );
+		out.write( "value1\tvalue3 value4 # trailing\n" );
+		out.write( "value4" );
+		out.close();
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		
+		assertTrue( analyzer.analyze( new DependencyImporter().importText( file ) ) );
+		assertEquals( 5, analyzer.getOrderedSize() );
+		assertEquals( 3, analyzer.getMaximumDepth() );
+		assertEquals( "value2", analyzer.getLevel( 3 ).get( 0 ) );
+	}
+	
+	@Test
+	public void testParallelText() throws IOException
+	{
+		final int count = 200000;
+		
+		BufferedWriter out = new BufferedWriter( new FileWriter( file ) );
+		out.write( "node0\n" );
+		
+		for (int i = 1; i < count; i++)
+		{
+			out.write( "node" + i + " node" + ( i - 1 ) + ( i > 1 ? " node" + ( i - 2 ) : "" ) + "\n" );
+		}
+		
+		out.close();
+		
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		Collection<DependencyNode<String>> nodes = new DependencyImporter( executor, 4 ).importText( file );
+		executor.shutdown();
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		
+		assertEquals( count, nodes.size() );
+		assertTrue( analyzer.analyze( nodes ) );
+		assertEquals( count - 1, analyzer.getMaximumDepth() );
+		assertEquals( "node" + ( count - 1 ), analyzer.getOrdered()[ count - 1 ] );
+	}
+	
+	@Test
+	public void testBinary() throws IOException
+	{
+		DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+		out.writeInt( 0 );
+		out.writeInt( 1 );
+		out.writeInt( 2 );
+		out.writeInt( 0 );
+		out.writeInt( 1 );
+		out.writeInt( 3 );
+		out.close();
+		
+		List<Integer> values = new ArrayList<Integer>();
+		
+		for (DependencyNode<Integer> dn : new DependencyImporter().importBinary( file ))
+		{
+			values.add( dn.getValue() );
+		}
+		
+		assertEquals( 4, values.size() );
+	}
+	
+	@Test
+	public void testParallelBinary() throws IOException
+	{
+		Random random = new Random( 7 );
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+		
+		for (int i = 0; i < 400000; i++)
+		{
+			out.writeInt( random.nextInt( 50000 ) );
+			out.writeInt( random.nextInt( 50000 ) );
+		}
+		
+		out.close();
+		
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		List<DependencyNode<Integer>> parallel = new ArrayList<DependencyNode<Integer>>( new DependencyImporter( executor, 4 ).importBinary( file ) );
+		executor.shutdown();
+		
+		List<DependencyNode<Integer>> serial = new ArrayList<DependencyNode<Integer>>( new DependencyImporter().importBinary( file ) );
+		
+		assertEquals( serial.size(), parallel.size() );
+		
+		for (int i = 0; i < serial.size(); i++)
+		{
+			assertEquals( serial.get( i ).getValue(), parallel.get( i ).getValue() );
+			assertEquals( getValues( serial.get( i ).getDependencies() ), getValues( parallel.get( i ).getDependencies() ) );
+		}
+	}
+	
+	@Test
+	public void testPartialPair() throws IOException
+	{
+		DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+		out.writeInt( 0 );
+		out.writeInt( 1 );
+		out.writeInt( 2 );
+		out.close();
+		
+		try
+		{
+			new DependencyImporter().importBinary( file );
+			fail( "A partial pair should be rejected" );
+		}
+		catch (IOException e)
+		{
+		}
+	}
+	
+	private static Set<Integer> getValues( Collection<DependencyNode<Integer>> nodes )
+	{
+		Set<Integer> values = new HashSet<Integer>();
+		
+		for (DependencyNode<Integer> dn : nodes)
+		{
+			values.add( dn.getValue() );
+		}
+		
+		return values;
+	}
+	
+}
@@ -0,0 +1,295 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestDependencyJournal
+{
+	
+	private static final DependencyJournal.Keyer<String> KEYER = new DependencyJournal.Keyer<String>()
+	{
+		public String getKey( String value )
+		{
+			return value;
+		}
+	};
+	
+	/**
+	 * A channel which fails to write or force when asked to.
+	 */
+	private static class FailingChannel extends FileChannel
+	{
+		private final FileChannel channel;
+		private boolean failWrite;
+		private boolean failForce;
+		
+		public FailingChannel( FileChannel channel )
+		{
+			this.channel = channel;
+		}
+		
+		public int read( ByteBuffer dst ) throws IOException
+		{
+			return channel.read( dst );
+		}
+		
+		public long read( ByteBuffer[] dsts, int offset, int length ) throws IOException
+		{
+			return channel.read( dsts, offset, length );
+		}
+		
+		public int read( ByteBuffer dst, long position ) throws IOException
+		{
+			return channel.read( dst, position );
+		}
+		
+		public int write( ByteBuffer src ) throws IOException
+		{
+			if (failWrite)
+			{
+				// Part of the batch reaches the file before the failure.
+				ByteBuffer part = src.duplicate();
+				part.limit( part.position() + part.remaining() / 2 );
+				channel.write( part );
+				
+				throw new IOException( "write failed" );
+			}
+			
+			return channel.write( src );
+		}
+		
+		public long write( ByteBuffer[] srcs, int offset, int length ) throws IOException
+		{
+			return channel.write( srcs, offset, length );
+		}
+		
+		public int write( ByteBuffer src, long position ) throws IOException
+		{
+			return channel.write( src, position );
+		}
+		
+		public long position() throws IOException
+		{
+			return channel.position();
+		}
+		
+		public FileChannel position( long newPosition ) throws IOException
+		{
+			channel.position( newPosition );
+			
+			return this;
+		}
+		
+		public long size() throws IOException
+		{
+			return channel.size();
+		}
+		
+		public FileChannel truncate( long size ) throws IOException
+		{
+			channel.truncate( size );
+			
+			return this;
+		}
+		
+		public void force( boolean metaData ) throws IOException
+		{
+			if (failForce)
+			{
+				throw new IOException( "force failed" );
+			}
+			
+			channel.force( metaData );
+		}
+		
+		public long transferTo( long position, long count, WritableByteChannel target ) throws IOException
+		{
+			return channel.transferTo( position, count, target );
+		}
+		
+		public long transferFrom( ReadableByteChannel src, long position, long count ) throws IOException
+		{
+			return channel.transferFrom( src, position, count );
+		}
+		
+		public MappedByteBuffer map( MapMode mode, long position, long size ) throws IOException
+		{
+			return channel.map( mode, position, size );
+		}
+		
+		public FileLock lock( long position, long size, boolean shared ) throws IOException
+		{
+			return channel.lock( position, size, shared );
+		}
+		
+		public FileLock tryLock( long position, long size, boolean shared ) throws IOException
+		{
+			return channel.tryLock( position, size, shared );
+		}
+		
+		protected void implCloseChannel() throws IOException
+		{
+			channel.close();
+		}
+	}
+	
+	private File file;
+	
+	@Before
+	public void create() throws IOException
+	{
+		file = File.createTempFile( "dependz", ".journal" );
+	}
+	
+	@After
+	public void delete()
+	{
+		file.delete();
+	}
+	
+	@Test
+	public void testReplay() throws IOException
+	{
+		DependencyJournal journal = new DependencyJournal( file );
+		journal.complete( "value0" );
+		journal.complete( "value1" );
+		journal.complete( "value1" );
+		journal.close();
+		
+		RandomAccessFile raw = new RandomAccessFile( file, "rw" );
+		raw.seek( raw.length() );
+		raw.writeInt( 100 );
+		raw.close();
+		
+		journal = new DependencyJournal( file );
+		
+		assertEquals( 2, journal.getCompletedCount() );
+		assertTrue( journal.isComplete( "value0" ) );
+		assertTrue( journal.isComplete( "value1" ) );
+		assertFalse( journal.isComplete( "value2" ) );
+		
+		journal.complete( "value2" );
+		journal.close();
+		
+		journal = new DependencyJournal( file );
+		
+		assertEquals( 3, journal.getCompletedCount() );
+		journal.close();
+	}
+	
+	@Test
+	public void testIncomplete() throws Exception
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+		
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+		value3.addDependency( value0 );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1, value2, value3 ) );
+		
+		DependencyJournal journal = new DependencyJournal( file );
+		DependencyTask<String> task = journal.record( new DependencyTask<String>()
+		{
+			public void execute( String value )
+			{
+			}
+		}, KEYER );
+		
+		task.execute( "value0" );
+		task.execute( "value2" );
+		task.execute( "value3" );
+		journal.close();
+		
+		journal = new DependencyJournal( file );
+		
+		assertEquals( Arrays.asList( value1, value2 ), journal.getIncomplete( analyzer, KEYER ) );
+		journal.close();
+	}
+	
+	@Test
+	public void testFailedSync() throws IOException
+	{
+		FailingChannel channel = new FailingChannel( new RandomAccessFile( file, "rw" ).getChannel() );
+		DependencyJournal journal = new DependencyJournal( channel );
+		
+		journal.complete( "value0" );
+		journal.complete( "value1" );
+		
+		channel.failForce = true;
+		
+		try
+		{
+			journal.sync();
+			fail( "the sync should fail" );
+		}
+		catch (IOException e)
+		{
+		}
+		
+		channel.failForce = false;
+		channel.failWrite = true;
+		journal.complete( "value2" );
+		
+		try
+		{
+			journal.sync();
+			fail( "the sync should fail" );
+		}
+		catch (IOException e)
+		{
+		}
+		
+		channel.failWrite = false;
+		journal.complete( "value3" );
+		journal.close();
+		
+		// Each record is written exactly once after the failed syncs.
+		assertEquals( 4 * ( 8 + "value0".length() ), file.length() );
+		
+		journal = new DependencyJournal( file );
+		
+		assertEquals( 4, journal.getCompletedCount() );
+		assertTrue( journal.isComplete( "value0" ) );
+		assertTrue( journal.isComplete( "value1" ) );
+		assertTrue( journal.isComplete( "value2" ) );
+		assertTrue( journal.isComplete( "value3" ) );
+		journal.close();
+	}
+	
+}
@@ -0,0 +1,202 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+public class TestDependencyLevelExecutor
+{
+
+	private final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+	@After
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private DependencyAnalyzer<Integer> create( List<DependencyNode<Integer>> nodes, int width )
+	{
+		for (int i = 0; i < width * 2 + 1; i++)
+		{
+			nodes.add( new DependencyNode<Integer>( i ) );
+		}
+
+		for (int i = 0; i < width; i++)
+		{
+			nodes.get( width + i ).addDependencies( nodes.get( i ), nodes.get( ( i + 1 ) % width ) );
+			nodes.get( width * 2 ).addDependency( nodes.get( width + i ) );
+		}
+
+		DependencyAnalyzer<Integer> analyzer = new DependencyAnalyzer<Integer>();
+		assertTrue( analyzer.analyze( nodes ) );
+
+		return analyzer;
+	}
+
+	@Test
+	public void testOrder() throws InterruptedException
+	{
+		final List<DependencyNode<Integer>> nodes = new ArrayList<DependencyNode<Integer>>();
+		final DependencyAnalyzer<Integer> analyzer = create( nodes, 5000 );
+		final AtomicIntegerArray executed = new AtomicIntegerArray( nodes.size() );
+
+		DependencyLevelExecutor<Integer> levels = new DependencyLevelExecutor<Integer>( executor, 4 );
+		levels.setTargetChunkNanos( 20000 );
+
+		for (int run = 1; run <= 3; run++)
+		{
+			final int expected = run - 1;
+
+			assertTrue( levels.execute( analyzer, new DependencyTask<Integer>()
+			{
+				public void execute( Integer value )
+				{
+					DependencyNode<Integer> dn = nodes.get( value );
+
+					for (DependencyNode<Integer> dependency : dn.getDependencies())
+					{
+						assertEquals( expected + 1, executed.get( dependency.getValue() ) );
+					}
+
+					assertTrue( executed.compareAndSet( value, expected, expected + 1 ) );
+				}
+			} ) );
+
+			assertTrue( levels.getNanosPerTask() > 0 );
+		}
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			assertEquals( 3, executed.get( i ) );
+		}
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException
+	{
+		final RuntimeException failure = new RuntimeException();
+		final List<DependencyNode<Integer>> nodes = new ArrayList<DependencyNode<Integer>>();
+
+		DependencyLevelExecutor<Integer> levels = new DependencyLevelExecutor<Integer>( executor, 4 );
+
+		assertFalse( levels.execute( create( nodes, 1000 ), new DependencyTask<Integer>()
+		{
+			public void execute( Integer value )
+			{
+				assertTrue( value < 1000 );
+
+				if (value == 500)
+				{
+					throw failure;
+				}
+			}
+		} ) );
+
+		assertSame( failure, levels.getError() );
+	}
+
+	@Test
+	public void testInterrupt() throws InterruptedException
+	{
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger running = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final List<DependencyNode<Integer>> nodes = new ArrayList<DependencyNode<Integer>>();
+		final DependencyAnalyzer<Integer> analyzer = create( nodes, 40 );
+
+		Thread interrupter = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					started.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				caller.interrupt();
+			}
+		};
+
+		interrupter.start();
+
+		DependencyLevelExecutor<Integer> levels = new DependencyLevelExecutor<Integer>( executor, 4 );
+
+		try
+		{
+			levels.execute( analyzer, new DependencyTask<Integer>()
+			{
+				public void execute( Integer value )
+				{
+					// The caller waits for a worker so it can't take the whole level.
+					if (Thread.currentThread() == caller)
+					{
+						try
+						{
+							started.await();
+						}
+						catch (InterruptedException e)
+						{
+							caller.interrupt();
+						}
+
+						return;
+					}
+
+					running.incrementAndGet();
+					started.countDown();
+
+					try
+					{
+						Thread.sleep( 20 );
+					}
+					catch (InterruptedException e)
+					{
+					}
+
+					running.decrementAndGet();
+				}
+			} );
+
+			fail( "The level should have been interrupted" );
+		}
+		catch (InterruptedException e)
+		{
+			assertEquals( 0, running.get() );
+			assertTrue( Thread.interrupted() );
+		}
+
+		interrupter.join();
+	}
+
+}
@@ -0,0 +1,94 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class TestDependencyQuery
+{
+
+	private DependencyNode<String>[] nodes = new DependencyNode[7];
+	
+	private DependencyQuery<String> create()
+	{
+		for (int i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = new DependencyNode<String>( "value" + i );
+		}
+
+		// value6 -> value5 -> value4 -> value3 -> value0
+		// value6 -> value2 -> value0
+		// value6 -> value1 -> value2
+		// value5 -> value1
+		nodes[6].addDependencies( nodes[5], nodes[2], nodes[1] );
+		nodes[5].addDependencies( nodes[4], nodes[1] );
+		nodes[4].addDependency( nodes[3] );
+		nodes[3].addDependency( nodes[0] );
+		nodes[2].addDependency( nodes[0] );
+		nodes[1].addDependency( nodes[2] );
+
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		assertTrue( analyzer.analyze( Arrays.asList( nodes ) ) );
+
+		return new DependencyQuery<String>( analyzer );
+	}
+
+	@Test
+	public void testShortestPath()
+	{
+		DependencyQuery<String> query = create();
+
+		assertEquals( Arrays.asList( nodes[6], nodes[2], nodes[0] ), query.getShortestPath( nodes[6], nodes[0] ) );
+		assertEquals( 4, query.getShortestPath( nodes[5], nodes[0] ).size() );
+		assertEquals( Arrays.asList( nodes[5], nodes[1], nodes[2] ), query.getShortestPath( nodes[5], nodes[2] ) );
+		assertEquals( Arrays.asList( nodes[4], nodes[3] ), query.getShortestPath( nodes[4], nodes[3] ) );
+		assertEquals( Arrays.asList( nodes[3] ), query.getShortestPath( nodes[3], nodes[3] ) );
+		assertTrue( query.getShortestPath( nodes[0], nodes[6] ).isEmpty() );
+		assertTrue( query.getShortestPath( nodes[2], nodes[3] ).isEmpty() );
+		assertTrue( query.dependsOn( nodes[6], nodes[3] ) );
+		assertFalse( query.dependsOn( nodes[1], nodes[4] ) );
+	}
+
+	@Test
+	public void testShortestPaths()
+	{
+		DependencyQuery<String> query = create();
+
+		List<List<DependencyNode<String>>> paths = query.getShortestPaths( nodes[6], nodes[0], 10 );
+
+		assertEquals( 4, paths.size() );
+		assertEquals( Arrays.asList( nodes[6], nodes[2], nodes[0] ), paths.get( 0 ) );
+		assertEquals( Arrays.asList( nodes[6], nodes[1], nodes[2], nodes[0] ), paths.get( 1 ) );
+		assertEquals( 5, paths.get( 2 ).size() );
+		assertEquals( 5, paths.get( 3 ).size() );
+
+		for (int i = 1; i < paths.size(); i++)
+		{
+			assertTrue( paths.get( i - 1 ).size() <= paths.get( i ).size() );
+		}
+
+		assertEquals( 2, query.getShortestPaths( nodes[6], nodes[0], 2 ).size() );
+		assertTrue( query.getShortestPaths( nodes[3], nodes[2], 2 ).isEmpty() );
+	}
+
+}
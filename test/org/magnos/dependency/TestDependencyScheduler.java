@@ -0,0 +1,161 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+public class TestDependencyScheduler
+{
+	
+	private final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+	
+	@After
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+	
+	private DependencyAnalyzer<Integer> wide( int count )
+	{
+		DependencyMap<Integer, Integer> map = new DependencyMap<Integer, Integer>();
+		map.put( -1, -1 );
+		
+		for (int i = 0; i < count; i++)
+		{
+			map.put( i, i );
+			map.addDependency( -1, i );
+		}
+		
+		return map.toAnalyzer();
+	}
+	
+	@Test
+	public void testOrder() throws InterruptedException
+	{
+		final List<Integer> executed = Collections.synchronizedList( new ArrayList<Integer>() );
+		
+		DependencyScheduler<Integer> scheduler = new DependencyScheduler<Integer>( executor );
+		
+		assertTrue( scheduler.execute( wide( 20 ), new DependencyTask<Integer>()
+		{
+			public void execute( Integer value )
+			{
+				executed.add( value );
+			}
+		} ) );
+		
+		assertEquals( 21, executed.size() );
+		assertEquals( Integer.valueOf( -1 ), executed.get( 20 ) );
+	}
+	
+	@Test
+	public void testConcurrencyLimit() throws InterruptedException
+	{
+		final AtomicInteger current = new AtomicInteger();
+		final AtomicInteger maximum = new AtomicInteger();
+		
+		DependencyResource database = new DependencyResource( "database", 2 );
+		DependencyScheduler<Integer> scheduler = new DependencyScheduler<Integer>( executor );
+		
+		for (int i = 0; i < 20; i++)
+		{
+			scheduler.setResources( i, database );
+		}
+		
+		assertTrue( scheduler.execute( wide( 20 ), new DependencyTask<Integer>()
+		{
+			public void execute( Integer value ) throws Exception
+			{
+				if (value >= 0)
+				{
+					int c = current.incrementAndGet();
+					
+					synchronized (maximum)
+					{
+						maximum.set( Math.max( maximum.get(), c ) );
+					}
+					
+					Thread.sleep( 2 );
+					current.decrementAndGet();
+				}
+			}
+		} ) );
+		
+		assertEquals( 2, maximum.get() );
+		assertEquals( 20, database.getAcquiredCount() );
+		assertEquals( 0, database.getQueueDepth() );
+		assertTrue( database.getMaximumWaitNanos() > 0 );
+	}
+	
+	@Test
+	public void testRateLimit() throws InterruptedException
+	{
+		DependencyResource api = new DependencyResource( "api", 10, 500 );
+		DependencyScheduler<Integer> scheduler = new DependencyScheduler<Integer>( executor );
+		
+		for (int i = 0; i < 10; i++)
+		{
+			scheduler.setResources( i, api );
+		}
+		
+		long start = System.nanoTime();
+		
+		assertTrue( scheduler.execute( wide( 10 ), new DependencyTask<Integer>()
+		{
+			public void execute( Integer value )
+			{
+			}
+		} ) );
+		
+		assertTrue( System.nanoTime() - start >= 9 * api.getIntervalNanos() );
+	}
+	
+	@Test
+	public void testFailure() throws InterruptedException
+	{
+		final Exception failure = new Exception();
+		
+		DependencyScheduler<Integer> scheduler = new DependencyScheduler<Integer>( executor );
+		
+		assertFalse( scheduler.execute( wide( 5 ), new DependencyTask<Integer>()
+		{
+			public void execute( Integer value ) throws Exception
+			{
+				if (value == 3)
+				{
+					throw failure;
+				}
+				
+				assertTrue( value != -1 );
+			}
+		} ) );
+		
+		assertSame( failure, scheduler.getError() );
+	}
+	
+}
@@ -0,0 +1,93 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ *              Open Software License (OSL 3.0)
+ */
+
+package org.magnos.dependency;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+
+public class TestDependencyTelemetry
+{
+	
+	@Test
+	public void testCriticalPath() throws InterruptedException
+	{
+		DependencyNode<String> value0 = new DependencyNode<String>( "value0" );
+		DependencyNode<String> value1 = new DependencyNode<String>( "value1" );
+		DependencyNode<String> value2 = new DependencyNode<String>( "value2" );
+		DependencyNode<String> value3 = new DependencyNode<String>( "value3" );
+		
+		value1.addDependency( value0 );
+		value2.addDependency( value1 );
+		value3.addDependency( value0 );
+		
+		DependencyAnalyzer<String> analyzer = new DependencyAnalyzer<String>();
+		analyzer.analyze( Arrays.asList( value0, value1, value2, value3 ) );
+		
+		DependencyTelemetry<String> telemetry = new DependencyTelemetry<String>( analyzer );
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		
+		DependencyScheduler<String> scheduler = new DependencyScheduler<String>( executor );
+		scheduler.setListener( telemetry );
+		
+		assertTrue( scheduler.execute( analyzer, new DependencyTask<String>()
+		{
+			public void execute( String value ) throws Exception
+			{
+				if (!value.equals( "value3" ))
+				{
+					Thread.sleep( 5 );
+				}
+			}
+		} ) );
+		
+		executor.shutdown();
+		
+		assertEquals( Arrays.asList( value0, value1, value2 ), telemetry.getCriticalPath() );
+		assertEquals( 4, telemetry.getRunHistogram().getCount() );
+		assertEquals( 4, telemetry.getWaitHistogram().getCount() );
+		assertEquals( 4, telemetry.getDependencyHistogram().getCount() );
+		assertEquals( 0, telemetry.getDependencyNanos( value0 ) );
+		assertTrue( telemetry.getDependencyNanos( value2 ) >= 10000000L );
+		assertTrue( telemetry.getRunNanos( value1 ) >= 5000000L );
+		assertTrue( telemetry.getElapsedNanos() >= 15000000L );
+	}
+	
+	@Test
+	public void testHistogram()
+	{
+		DependencyHistogram histogram = new DependencyHistogram();
+		
+		for (int i = 1; i <= 1000; i++)
+		{
+			histogram.record( i * 1000L );
+		}
+		
+		assertEquals( 1000, histogram.getCount() );
+		assertEquals( 1000, histogram.getMinimum() );
+		assertEquals( 1000000, histogram.getMaximum() );
+		assertEquals( 500000, histogram.getPercentile( 50 ), 500000 * 0.02 );
+		assertEquals( 990000, histogram.getPercentile( 99 ), 990000 * 0.02 );
+		assertEquals( 1000000, histogram.getPercentile( 100 ) );
+	}
+	
+}